@@ -0,0 +1,61 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import board.*;
+import net.*;
+import player.*;
+
+/**
+ * Benchmarks encoding boards as network inputs, allocating and into
+ * reusable buffers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncoderBenchmark {
+  
+  protected Board[] boards;
+  protected double[] input = new double[196];
+  protected SparseInput sparse = new SparseInput(196);
+  
+  @Setup
+  public void setup() {
+    boards = new Positions().boards;
+  }
+  
+  @Benchmark
+  public double boardToVector() {
+    double result = 0;
+    
+    for (int i=0; i<boards.length; i++)
+      result += Utility.boardToVector(boards[i])[0];
+    
+    return result;
+  }
+  
+  @Benchmark
+  public double boardToVectorBuffer() {
+    double result = 0;
+    
+    for (int i=0; i<boards.length; i++)
+      result += Utility.boardToVector(boards[i], input)[0];
+    
+    return result;
+  }
+  
+  @Benchmark
+  public int boardToSparse() {
+    int result = 0;
+    
+    for (int i=0; i<boards.length; i++)
+      result += Utility.boardToSparse(boards[i], sparse).size;
+    
+    return result;
+  }
+}
@@ -0,0 +1,59 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import board.*;
+import move.*;
+
+/**
+ * Benchmarks move generation and board copying over a fixed set of
+ * positions and rolls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+  
+  protected Positions positions;
+  protected MoveGenerator generator = new MoveGenerator();
+  
+  @Setup
+  public void setup() {
+    positions = new Positions();
+  }
+  
+  @Benchmark
+  public int getAllMoves() {
+    int result = 0;
+    
+    for (int i=0; i<Positions.COUNT; i++)
+      result += MovementFactory.getAllMoves(positions.players[i], positions.dice[i], positions.boards[i]).length;
+    
+    return result;
+  }
+  
+  @Benchmark
+  public int moveGenerator() {
+    int result = 0;
+    
+    for (int i=0; i<Positions.COUNT; i++)
+      result += generator.generate(positions.players[i], positions.dice[i], positions.boards[i]);
+    
+    return result;
+  }
+  
+  @Benchmark
+  public int getScratch() {
+    int result = 0;
+    
+    for (int i=0; i<Positions.COUNT; i++)
+      result += positions.boards[i].getScratch().getBar(Board.WHITE);
+    
+    return result;
+  }
+}
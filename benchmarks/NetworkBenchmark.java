@@ -0,0 +1,143 @@
+package benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import board.*;
+import move.*;
+import net.*;
+import player.*;
+
+/**
+ * Benchmarks network evaluation: the object network, the flat network
+ * (dense and sparse, and sparse with each approximate sigmoid),
+ * incremental evaluation and the float32 network (with and without the
+ * vector kernels), each scoring every candidate of a fixed set of rolls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkBenchmark {
+  
+  protected NeuralNetwork neural;
+  protected FlatNetwork flat;
+  protected FloatNetwork single;
+  protected Accumulator accumulator;
+  
+  // the root input of each roll, and the input of each of its candidates
+  protected double[][] roots;
+  protected double[][][] candidates;
+  protected SparseInput[][] sparse;
+  
+  protected double[] output;
+  
+  @Setup
+  public void setup() throws Exception {
+    Positions positions = new Positions();
+    
+    neural = Positions.getNetwork();
+    flat = new FlatNetwork(neural);
+    single = new FloatNetwork(flat);
+    accumulator = new Accumulator(flat);
+    output = new double[flat.getOutputs()];
+    
+    roots = new double[Positions.COUNT][];
+    candidates = new double[Positions.COUNT][][];
+    sparse = new SparseInput[Positions.COUNT][];
+    
+    for (int i=0; i<Positions.COUNT; i++) {
+      int other = Board.getOtherPlayer(positions.players[i]);
+      Move[] moves = MovementFactory.getAllMoves(positions.players[i], positions.dice[i], positions.boards[i]);
+      
+      roots[i] = BackPropPlayer2.getInput(positions.boards[i], other);
+      candidates[i] = new double[moves.length][];
+      sparse[i] = new SparseInput[moves.length];
+      
+      for (int j=0; j<moves.length; j++) {
+        candidates[i][j] = BackPropPlayer2.getInput(moves[j].getCurrentBoard(), other);
+        sparse[i][j] = BackPropPlayer2.getSparseInput(moves[j].getCurrentBoard(), other, new SparseInput(196));
+      }
+    }
+  }
+  
+  @Benchmark
+  public double neuralNetwork() {
+    double result = 0;
+    
+    for (int i=0; i<candidates.length; i++)
+      for (int j=0; j<candidates[i].length; j++)
+        result += neural.getValue(candidates[i][j])[0];
+    
+    return result;
+  }
+  
+  @Benchmark
+  public double flatDense() {
+    double result = 0;
+    
+    for (int i=0; i<candidates.length; i++)
+      for (int j=0; j<candidates[i].length; j++)
+        result += flat.getValue(candidates[i][j], output)[0];
+    
+    return result;
+  }
+  
+  @Benchmark
+  public double flatSparse() {
+    double result = 0;
+    
+    for (int i=0; i<sparse.length; i++)
+      for (int j=0; j<sparse[i].length; j++)
+        result += flat.getValue(sparse[i][j], output)[0];
+    
+    return result;
+  }
+  
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-Dtdgammon.activation=table")
+  public double flatSparseTable() {
+    return flatSparse();
+  }
+  
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-Dtdgammon.activation=polynomial")
+  public double flatSparsePolynomial() {
+    return flatSparse();
+  }
+  
+  @Benchmark
+  public double accumulator() {
+    double result = 0;
+    
+    for (int i=0; i<candidates.length; i++) {
+      accumulator.setRoot(roots[i]);
+      
+      for (int j=0; j<candidates[i].length; j++)
+        result += accumulator.getValue(candidates[i][j], output)[0];
+    }
+    
+    return result;
+  }
+  
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+  public double floatSparse() {
+    double result = 0;
+    
+    for (int i=0; i<sparse.length; i++)
+      for (int j=0; j<sparse[i].length; j++)
+        result += single.getValue(sparse[i][j], output)[0];
+    
+    return result;
+  }
+  
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "-Dtdgammon.vector=false")
+  public double floatSparseScalar() {
+    return floatSparse();
+  }
+}
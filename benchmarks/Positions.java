@@ -0,0 +1,81 @@
+package benchmarks;
+
+import java.io.*;
+import java.util.*;
+
+import board.*;
+import move.*;
+import net.*;
+
+/**
+ * Fixed, seeded positions and networks shared by the benchmarks, so that
+ * every run measures the same work.
+ */
+public class Positions {
+  
+  // the seed of the games the positions are taken from
+  public static final long SEED = 20170424L;
+  
+  // the number of positions
+  public static final int COUNT = 256;
+  
+  // the positions, the player to move in each and its roll
+  public Board[] boards = new Board[COUNT];
+  public int[] players = new int[COUNT];
+  public Dice[] dice = new Dice[COUNT];
+  
+  /**
+   * Builds the positions by playing random games from the opening
+   * with a fixed seed, keeping every position reached.
+   */
+  public Positions() {
+    Random random = new Random(SEED);
+    Board board = new Board();
+    int player = Board.BLACK;
+    
+    for (int i=0; i<COUNT; i++) {
+      if (board.isGameOver()) {
+        board = new Board();
+        player = Board.BLACK;
+      }
+      
+      boards[i] = board;
+      players[i] = player;
+      dice[i] = roll(random);
+      
+      Move[] moves = MovementFactory.getAllMoves(player, dice[i], board);
+      board = moves[random.nextInt(moves.length)].getCurrentBoard();
+      player = Board.getOtherPlayer(player);
+    }
+  }
+  
+  /**
+   * Rolls the dice with the given generator
+   *
+   * @param random The generator
+   * @return The roll
+   */
+  public static Dice roll(Random random) {
+    return Dice.getDice(random.nextInt(Dice.MAX_VALUE) + 1, random.nextInt(Dice.MAX_VALUE) + 1);
+  }
+  
+  /**
+   * Returns the trained network if SavedNN is in the working directory,
+   * or else a 196-40-1 network with seeded random weights.
+   *
+   * @return The network
+   */
+  public static NeuralNetwork getNetwork() throws IOException, ClassNotFoundException {
+    if (new File("SavedNN").isFile())
+      return NeuralNetwork.readFrom("SavedNN");
+    
+    NeuralNetwork net = new NeuralNetwork(196, new int[] {40, 1});
+    Random random = new Random(SEED);
+    
+    for (int i=0; i<net.hidden.length; i++)
+      for (int j=0; j<net.hidden[i].length; j++)
+        net.hidden[i][j].randomizeWeights(random);
+    
+    return net;
+  }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import board.*;
+import net.*;
+import player.*;
+
+/**
+ * Benchmarks one TD(lambda) training step of BackPropPlayer2 (a forward
+ * pass followed by backprop) over a fixed set of positions, on the
+ * double network and on the float32 one with the vector kernels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainingBenchmark {
+  
+  protected BackPropPlayer2 player;
+  protected FloatNetwork single;
+  protected FloatTDTrainer trainer;
+  protected double[][] inputs;
+  protected double[][] targets;
+  
+  @Setup
+  public void setup() throws Exception {
+    Positions positions = new Positions();
+    Random random = new Random(Positions.SEED);
+    
+    player = new BackPropPlayer2(0.7, 0.1, true, new FlatNetwork(Positions.getNetwork()));
+    single = new FloatNetwork(new FlatNetwork(Positions.getNetwork()));
+    trainer = new FloatTDTrainer(single, 0.7, new double[] {0.08, 0.02});
+    
+    inputs = new double[Positions.COUNT][];
+    targets = new double[Positions.COUNT][];
+    
+    for (int i=0; i<Positions.COUNT; i++) {
+      inputs[i] = BackPropPlayer2.getInput(positions.boards[i], positions.players[i]);
+      targets[i] = new double[] {random.nextDouble()};
+    }
+  }
+  
+  @Benchmark
+  public double backprop() {
+    FlatNetwork net = player.getNetwork();
+    double result = 0;
+    
+    for (int i=0; i<inputs.length; i++) {
+      double[] output = net.getValue(inputs[i]);
+      player.backprop(inputs[i], output, targets[i]);
+      result += output[0];
+    }
+    
+    return result;
+  }
+  
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+  public double floatBackprop() {
+    double[] output = new double[single.getOutputs()];
+    double result = 0;
+    
+    for (int i=0; i<inputs.length; i++) {
+      single.getValue(inputs[i], output);
+      trainer.train(inputs[i], output, targets[i]);
+      result += output[0];
+    }
+    
+    return result;
+  }
+}
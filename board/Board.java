@@ -1,6 +1,7 @@
 package board;
 
 import java.io.*;
+import java.util.*;
 
 import move.IllegalMoveException;
 
@@ -17,17 +18,36 @@ public class Board {
   public static final int[] INITIAL_NUMBERS = new int[] {2, 5, 3, 5, 5, 3, 5, 2};
   public static final int[] INITIAL_COLORS = new int[] {WHITE, BLACK, BLACK, WHITE, BLACK, WHITE, WHITE, BLACK};
   
-  // the internal array representing the number of pieces at each spike
-  private int[] board;
+  // the offsets in counts of the bar and of the pieces off the board
+  // (BAR + WHITE is the number of white pieces on the bar, and so on)
+  public static final int BAR = NUM_SPIKES;
+  public static final int OFF = NUM_SPIKES + 2;
   
-  // the array representing the color of the pieces on each spike
-  private int[] colors;
+  // the whole position packed into one array: the number of pieces at each
+  // spike, positive for white and negative for black, followed by the
+  // white/black pieces on the bar and the white/black pieces off the board
+  private byte[] counts;
   
-  // the number of white/black pieces on the bar (bar[WHITE] white, bar[BLACK] black)
-  private int[] bar;
+  // the largest number of pieces of one color
+  public static final int MAX_PIECES = 15;
   
-  // the number of white/black pieces off of the board
-  private int[] off;
+  // the random Zobrist keys of each count (-MAX_PIECES to MAX_PIECES) at
+  // each entry of counts.  A count of 0 has key 0, so an empty entry adds
+  // nothing to the board's key.
+  private static final long[][] ZOBRIST = new long[OFF + 2][2 * MAX_PIECES + 1];
+  
+  static {
+    Random random = new Random(0x5eed);
+    
+    for (int i=0; i<ZOBRIST.length; i++)
+      for (int j=0; j<ZOBRIST[i].length; j++)
+        if (j != MAX_PIECES)
+          ZOBRIST[i][j] = random.nextLong();
+  }
+  
+  // the Zobrist key of the position, the xor of the keys of every count,
+  // kept up to date as pieces are moved
+  private long key;
   
   /**
    * Public equals
@@ -38,8 +58,11 @@ public class Board {
   public boolean equals(Object o) {
     Board board = (Board) o;
     
-    return (isEqual(this.board, board.board) && isEqual(colors, board.colors) && 
-            isEqual(bar, board.bar) && isEqual(off, board.off));
+    // different keys always mean different positions
+    if (key != board.key)
+      return false;
+    
+    return Arrays.equals(counts, board.counts);
   }
   
   /**
@@ -63,55 +86,81 @@ public class Board {
    * @return the hasCode of the final board
    */
   public int hashCode() {
-    int base = 19283;
-    
-    base = hash(base, off);
-    base = hash(base, bar);
-    base = hash(base, board);
-    base = hash(base, colors);
-    
-    return base;
+    return (int) (key ^ (key >>> 32));
   }
   
-  protected int hash(int base, int[] array) {
-    for (int i=0; i<array.length; i++) {
-      if (array[i] == 0)
-        base = (base * 273891);
-      else
-        base = (base + array[i]) ^ (array[i] + 55);
-    }
+  /**
+   * Returns the 64-bit Zobrist key of this board, which is the same for
+   * equal boards and is suitable for keying transposition tables and
+   * evaluation caches.
+   *
+   * @return The key of this board
+   */
+  public long getKey() {
+    return key;
+  }
+  
+  /**
+   * Changes an entry of counts by the given amount, updating the key.
+   *
+   * @param index The entry of counts
+   * @param delta The change in the count
+   */
+  private void add(int index, int delta) {
+    int count = counts[index];
     
-    return base;
+    key ^= ZOBRIST[index][count + MAX_PIECES] ^ ZOBRIST[index][count + delta + MAX_PIECES];
+    counts[index] = (byte) (count + delta);
   }
   
   /**
    * Constructor, build an newly initialzed board
    */
   public Board() {
-    // build the board
-    this.board = new int[NUM_SPIKES];
-    this.colors = new int[NUM_SPIKES];
-    
-    // build the other locations
-    this.bar = new int[2];
-    this.off = new int[2];
+    // build the board, the bar and the off locations
+    this.counts = new byte[OFF + 2];
     
     // place the initial pieces
     reset();
   }
   
+  /**
+   * Constructor, builds a board with the given pieces
+   *
+   * @param spikes The number of pieces at each spike, positive for
+   *               white and negative for black
+   * @param bar The number of white/black pieces on the bar
+   * @param off The number of white/black pieces off the board
+   */
+  public Board(int[] spikes, int[] bar, int[] off) {
+    this.counts = new byte[OFF + 2];
+    
+    for (int i=0; i<NUM_SPIKES; i++)
+      add(i, spikes[i]);
+    
+    for (int i=0; i<2; i++) {
+      add(BAR + i, bar[i]);
+      add(OFF + i, off[i]);
+    }
+  }
+  
   /**
    * Constructor, builds a copy of the given board
    */
   protected Board(Board other) {
-    // initialze this board
-    this();
-    
-    // place the pieces
-    System.arraycopy(other.board, 0, this.board, 0, this.board.length);
-    System.arraycopy(other.colors, 0, this.colors, 0, this.colors.length);
-    System.arraycopy(other.bar, 0, this.bar, 0, this.bar.length);
-    System.arraycopy(other.off, 0, this.off, 0, this.off.length);
+    // the whole position is one small array, so copying is a single clone
+    this.counts = other.counts.clone();
+    this.key = other.key;
+  }
+  
+  /**
+   * Makes this board a copy of the given board, without allocating
+   *
+   * @param other The board to copy
+   */
+  public void copyFrom(Board other) {
+    System.arraycopy(other.counts, 0, counts, 0, counts.length);
+    key = other.key;
   }
   
   /**
@@ -130,12 +179,12 @@ public class Board {
    * @return The winner of the game
    */
   public int getWinner() {
-    boolean black = (bar[BLACK] > 0);
-    boolean white = (bar[WHITE] > 0);
+    boolean black = (counts[BAR + BLACK] > 0);
+    boolean white = (counts[BAR + WHITE] > 0);
     
     for (int i=0; i<NUM_SPIKES; i++) {
-      black = black | (colors[i] == BLACK);
-      white = white | (colors[i] == WHITE);
+      black = black | (counts[i] < 0);
+      white = white | (counts[i] > 0);
     }
     
     if (! black)
@@ -152,12 +201,12 @@ public class Board {
    * @return Whether or not the game is over
    */
   public boolean isGameOver() {
-    boolean black = (bar[BLACK] > 0);
-    boolean white = (bar[WHITE] > 0);
+    boolean black = (counts[BAR + BLACK] > 0);
+    boolean white = (counts[BAR + WHITE] > 0);
     
     for (int i=0; i<NUM_SPIKES; i++) {
-      black = black | (colors[i] == BLACK);
-      white = white | (colors[i] == WHITE);
+      black = black | (counts[i] < 0);
+      white = white | (counts[i] > 0);
     }
     
     return (! (black && white));
@@ -167,21 +216,23 @@ public class Board {
    * Resets the pieces on the board to their initial configurations
    */
   public void reset() {
-    for (int i=0; i<NUM_SPIKES; i++) {
-      board[i] = 0;
-      colors[i] = NEITHER;
-    }
-  
-    for (int i=0; i<bar.length; i++)
-      bar[i] = 0;
+    Arrays.fill(counts, (byte) 0);
     
-    for (int i=0; i<off.length; i++)
-      off[i] = 0;
+    key = 0;
     
-    for (int i=0; i<INITIAL_LOCATIONS.length; i++) {
-      board[INITIAL_LOCATIONS[i]] = INITIAL_NUMBERS[i];
-      colors[INITIAL_LOCATIONS[i]] = INITIAL_COLORS[i];
-    }
+    for (int i=0; i<INITIAL_LOCATIONS.length; i++)
+      add(INITIAL_LOCATIONS[i], INITIAL_NUMBERS[i] * getSign(INITIAL_COLORS[i]));
+  }
+  
+  /**
+   * Returns the sign of the given color's counts in the packed
+   * representation
+   *
+   * @param color The color
+   * @return 1 for white, -1 for black
+   */
+  protected static int getSign(int color) {
+    return (color == WHITE ? 1 : -1);
   }
   
   /**
@@ -192,7 +243,9 @@ public class Board {
    *         (WHITE, BLACK, or NEITHER)
    */
   public int getColor(int location) {
-    return colors[location];
+    int count = counts[location];
+    
+    return (count > 0 ? WHITE : (count < 0 ? BLACK : NEITHER));
   }
   
   /**
@@ -202,7 +255,7 @@ public class Board {
    * @return the number of pieces at the location
    */
   public int getPieces(int location) {
-    return board[location];
+    return Math.abs(counts[location]);
   }
   
   /**
@@ -237,8 +290,12 @@ public class Board {
    * @return the number of black pieces at the location
    */
   public int getPieces(int color, int location) {
-    if (colors[location] == color)
-      return board[location];
+    int count = counts[location];
+    
+    if (color == WHITE)
+      return (count > 0 ? count : 0);
+    else if (color == BLACK)
+      return (count < 0 ? -count : 0);
     
     return 0;
   }
@@ -269,7 +326,7 @@ public class Board {
    * @return the number of pieces on the bar
    */
   public int getBar(int color) {
-    return bar[color];
+    return counts[BAR + color];
   }  
   
   /**
@@ -298,7 +355,7 @@ public class Board {
    * @return the number of pieces beared off
    */
   public int getOff(int color) {
-    return off[color];
+    return counts[OFF + color];
   }  
   
   /**
@@ -331,8 +388,7 @@ public class Board {
     int result = 0;
     
     for (int i=0; i<NUM_SPIKES; i++)
-      if (colors[i] == color)
-        result += getPieces(i) * Math.abs(base - i);
+      result += getPieces(color, i) * Math.abs(base - i);
     
     result += NUM_SPIKES * getBar(color);
     
@@ -391,13 +447,10 @@ public class Board {
    * @param location The location to move
    */
   public void moveToLocation(int color, int location) throws IllegalMoveException {
-    if (colors[location] == getOtherPlayer(color))
+    if (getColor(location) == getOtherPlayer(color))
       throw new IllegalMoveException("Unexpected error - other color pieces at location " + location + " of color " + color);
     
-    board[location]++;
-    
-    if (board[location] == 1)
-      colors[location] = color;
+    add(location, getSign(color));
   }
   
   /**
@@ -407,13 +460,10 @@ public class Board {
    * @param location The location to remove
    */
   public void removeFromLocation(int color, int location) throws IllegalMoveException {
-    if (colors[location] != color)
+    if (getColor(location) != color)
       throw new IllegalMoveException("Unexpected error - no pieces at location " + location + " of color " + color);
     
-    board[location]--;
-    
-    if (board[location] == 0)
-      colors[location] = NEITHER;
+    add(location, -getSign(color));
   }
   
   /**
@@ -422,7 +472,7 @@ public class Board {
    * @param color The color to move
    */
   public void moveToBar(int color) {
-    bar[color]++;
+    add(BAR + color, 1);
   }
   
   /**
@@ -431,10 +481,10 @@ public class Board {
    * @param color The color to remove
    */
   public void removeFromBar(int color) throws IllegalMoveException {
-    if (bar[color] == 0)
+    if (counts[BAR + color] == 0)
       throw new IllegalMoveException("Unexpected error - no pieces on bar of color " + color);
     
-    bar[color]--;
+    add(BAR + color, -1);
   }
   
   /**
@@ -443,7 +493,7 @@ public class Board {
    * @param color The color to move
    */
   public void moveOff(int color) {
-    off[color]++;
+    add(OFF + color, 1);
   }
   
   /**
@@ -488,9 +538,9 @@ public class Board {
       
       out.print("| ");
       
-      if ((i == 1) && (bar[BLACK] > 6))
-        out.print(bar[BLACK] + "");
-      else if (bar[BLACK] >= (6-i))
+      if ((i == 1) && (getBar(BLACK) > 6))
+        out.print(getBar(BLACK) + "");
+      else if (getBar(BLACK) >= (6-i))
         out.print("X");
       else
         out.print(" ");
@@ -505,11 +555,11 @@ public class Board {
       
       out.print("| ");
       
-      if (off[WHITE] >= i)
+      if (getOff(WHITE) >= i)
         out.print("O");
-      if (off[WHITE] >= 5+i)
+      if (getOff(WHITE) >= 5+i)
         out.print("O");
-      if (off[WHITE] >= 10+i)
+      if (getOff(WHITE) >= 10+i)
         out.print("O");
       
       out.println();
@@ -528,9 +578,9 @@ public class Board {
       
       out.print("| ");
       
-      if ((i == 1) && (bar[WHITE] > 6))
-        out.print(bar[WHITE] + "");
-      else if (bar[WHITE] >= (6-i))
+      if ((i == 1) && (getBar(WHITE) > 6))
+        out.print(getBar(WHITE) + "");
+      else if (getBar(WHITE) >= (6-i))
         out.print("O");
       else
         out.print(" ");
@@ -545,11 +595,11 @@ public class Board {
       
       out.print("| ");
       
-      if (off[BLACK] >= i)
+      if (getOff(BLACK) >= i)
         out.print("X");
-      if (off[BLACK] >= 5+i)
+      if (getOff(BLACK) >= 5+i)
         out.print("X");
-      if (off[BLACK] >= 10+i)
+      if (getOff(BLACK) >= 10+i)
         out.print("X");
       
       out.println();
@@ -566,12 +616,12 @@ public class Board {
    * @param count The count number
    */
   protected void print(PrintStream out, int location, int count) {
-    String key = (colors[location] == WHITE ? "O" : "X");
+    String key = (getColor(location) == WHITE ? "O" : "X");
     
-    if ((count >= 5) && (board[location] > count))
-      out.print("" + board[location]);
+    if ((count >= 5) && (getPieces(location) > count))
+      out.print("" + getPieces(location));
     else
-      if (board[location] >= count)
+      if (getPieces(location) >= count)
         out.print(key);
       else
         out.print(" ");
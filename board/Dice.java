@@ -22,9 +22,12 @@ public class Dice {
         DICE[i-1][j-1] = new Dice(i,j);
   }
     
-  // the random number generator
+  // the random number generator, shared by every caller of roll()
   private static Random random = new Random();
   
+  // a source which rolls with the shared random number generator
+  public static final DiceSource SHARED = Dice::roll;
+  
   // the value of the dies
   protected int die1;
   protected int die2;
@@ -49,7 +52,39 @@ public class Dice {
   }
   
   /**
-   * Method which rolls the dice
+   * Returns the 21 distinct rolls, the doubles first.  Each double
+   * comes up once in 36 rolls and every other roll twice.
+   *
+   * @return The distinct rolls
+   */
+  public static Dice[] getRolls() {
+    Dice[] result = new Dice[21];
+    int k = 0;
+    
+    for (int i=MIN_VALUE; i<=MAX_VALUE; i++)
+      result[k++] = getDice(i, i);
+    
+    for (int i=MIN_VALUE; i<=MAX_VALUE; i++)
+      for (int j=i+1; j<=MAX_VALUE; j++)
+        result[k++] = getDice(i, j);
+    
+    return result;
+  }
+  
+  /**
+   * Returns how many of the 36 rolls of two dice this roll stands
+   * for: 1 for doubles and 2 for the others.
+   *
+   * @return The weight of this roll
+   */
+  public int getWeight() {
+    return isDoubles() ? 1 : 2;
+  }
+  
+  /**
+   * Method which rolls the dice.  All threads share the same random
+   * number generator; games which need their own (or a reproducible)
+   * stream of rolls should use a DiceSource instead.
    */
   public static Dice roll() {
     return DICE[random.nextInt(MAX_VALUE-MIN_VALUE+1)][random.nextInt(MAX_VALUE-MIN_VALUE+1)];
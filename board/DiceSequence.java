@@ -0,0 +1,80 @@
+package board;
+
+import java.util.*;
+
+/**
+ * Class which replays a fixed sequence of dice rolls, such as one
+ * generated in advance or one recorded from an earlier game.  Rolling
+ * past the end of the sequence throws an IllegalDiceRollException.
+ */
+public class DiceSequence implements DiceSource {
+  
+  // the rolls, in order
+  protected Dice[] rolls;
+  
+  // the index of the next roll
+  protected int next;
+  
+  /**
+   * Builds a source which replays the provided rolls
+   *
+   * @param rolls The rolls, in order
+   */
+  public DiceSequence(Dice[] rolls) {
+    this.rolls = rolls;
+  }
+  
+  /**
+   * Builds a sequence of the next count rolls of the provided source
+   *
+   * @param source The source to roll
+   * @param count The number of rolls
+   * @return The sequence
+   */
+  public static DiceSequence generate(DiceSource source, int count) {
+    Dice[] rolls = new Dice[count];
+    
+    for (int i=0; i<count; i++)
+      rolls[i] = source.roll();
+    
+    return new DiceSequence(rolls);
+  }
+  
+  /**
+   * Returns the next roll of the sequence
+   *
+   * @return The next roll
+   */
+  public Dice roll() {
+    if (next == rolls.length)
+      throw new IllegalDiceRollException("The sequence of " + rolls.length + " rolls is exhausted");
+    
+    return rolls[next++];
+  }
+  
+  /**
+   * Starts the sequence again from the first roll
+   */
+  public void rewind() {
+    next = 0;
+  }
+  
+  /**
+   * Returns the number of rolls made so far
+   *
+   * @return The number of rolls made
+   */
+  public int getPosition() {
+    return next;
+  }
+  
+  /**
+   * Returns the number of rolls in the sequence
+   *
+   * @return The length of the sequence
+   */
+  public int size() {
+    return rolls.length;
+  }
+  
+}
@@ -0,0 +1,18 @@
+package board;
+
+/**
+ * Interface for anything which supplies the dice rolls of a game.
+ * Each Backgammon has its own source, so games running on different
+ * threads do not share (or contend on) one random number generator,
+ * and a game can be replayed by replaying its source.
+ */
+public interface DiceSource {
+  
+  /**
+   * Returns the next roll of the dice
+   *
+   * @return The next roll
+   */
+  public Dice roll();
+  
+}
@@ -0,0 +1,66 @@
+package board;
+
+import java.util.*;
+
+/**
+ * Class which rolls the dice from its own SplittableRandom.  A source
+ * built from a seed always produces the same rolls, and split() hands
+ * out further independent sources, one for each game or thread, which
+ * are just as reproducible as the source they were split from.
+ */
+public class RandomDiceSource implements DiceSource {
+  
+  // the random number generator
+  protected SplittableRandom random;
+  
+  /**
+   * Builds a source with an arbitrary seed
+   */
+  public RandomDiceSource() {
+    this(new SplittableRandom());
+  }
+  
+  /**
+   * Builds a source which always produces the same rolls for
+   * the same seed.
+   *
+   * @param seed The seed
+   */
+  public RandomDiceSource(long seed) {
+    this(new SplittableRandom(seed));
+  }
+  
+  /**
+   * Builds a source on the provided generator
+   *
+   * @param random The generator to roll with
+   */
+  protected RandomDiceSource(SplittableRandom random) {
+    this.random = random;
+  }
+  
+  /**
+   * Returns a new source whose rolls are independent of this one's,
+   * and determined by this source's seed and the number of rolls and
+   * splits made from it so far.
+   *
+   * @return The new source
+   */
+  public RandomDiceSource split() {
+    return new RandomDiceSource(random.split());
+  }
+  
+  /**
+   * Rolls the dice
+   *
+   * @return The roll
+   */
+  public Dice roll() {
+    int range = Dice.MAX_VALUE - Dice.MIN_VALUE + 1;
+    int die1 = random.nextInt(range) + Dice.MIN_VALUE;
+    int die2 = random.nextInt(range) + Dice.MIN_VALUE;
+    
+    return Dice.getDice(die1, die2);
+  }
+  
+}
@@ -0,0 +1,49 @@
+package driver;
+
+import java.io.*;
+
+import net.*;
+
+/**
+ * Converts a network between the serialized NeuralNetwork format and
+ * the binary WeightFile format, which FlatNetwork.writeTo now writes
+ * and which loads much faster.  Either format is accepted as input, and
+ * the time it takes to load is reported.
+ *
+ * Usage: java driver.ConvertDriver [input] [output] [-serialized]
+ *
+ * input defaults to SavedNN and output to input.bin; -serialized writes
+ * the old format instead, for tools which only read that.
+ */
+public class ConvertDriver {
+
+  public static void main(String[] args) throws Exception {
+    String input = args.length > 0 ? args[0] : "SavedNN";
+    String output = args.length > 1 ? args[1] : input + ".bin";
+    boolean serialized = args.length > 2 && args[2].equals("-serialized");
+
+    long start = System.nanoTime();
+    FlatNetwork net = FlatNetwork.readFrom(input);
+    long elapsed = System.nanoTime() - start;
+
+    System.out.printf("Read %s (%s, %d bytes) in %.2f ms%n", input, WeightFile.isWeightFile(input) ? "weight file" : "serialized",
+                      new File(input).length(), elapsed / 1e6);
+
+    if (serialized)
+      net.toNeuralNetwork().writeTo(output);
+    else
+      net.writeTo(output);
+
+    start = System.nanoTime();
+    FlatNetwork copy = FlatNetwork.readFrom(output);
+    elapsed = System.nanoTime() - start;
+
+    for (int l=0; l<net.getLayers(); l++)
+      for (int i=0; i<net.weights[l].length; i++)
+        if (Double.doubleToLongBits(net.weights[l][i]) != Double.doubleToLongBits(copy.weights[l][i]))
+          throw new IOException(output + " does not read back as " + input + " (layer " + l + ", weight " + i + ")");
+
+    System.out.printf("Wrote %s (%s, %d bytes), which reads back identically in %.2f ms%n", output, serialized ? "serialized" : "weight file",
+                      new File(output).length(), elapsed / 1e6);
+  }
+}
@@ -0,0 +1,159 @@
+package driver;
+
+import java.util.*;
+
+import board.*;
+import move.*;
+import net.*;
+import player.*;
+
+/**
+ * Checks the search of ExpectimaxPlayer against a reference written as
+ * plainly as possible: every position is evaluated with a full forward
+ * pass of the network on its dense input, with no accumulator, cache
+ * or shared generator, and the expectation is taken over the 21 rolls
+ * by straightforward recursion.  The two are compared at 2 plies on the
+ * positions of a seeded random game, and at 3 plies on every tenth of
+ * them, so that any change to the search which changes its values is
+ * caught.
+ *
+ * Usage: java driver.ExpectimaxCheckDriver [positions] [network] [seed]
+ *
+ * positions defaults to 100, network to SavedNN and seed to a fixed one.
+ */
+public class ExpectimaxCheckDriver {
+
+  // the largest difference from the reference tolerated, in equity
+  public static final double TOLERANCE = 1e-9;
+
+  // the network the reference evaluates, a view of its own
+  protected FlatNetwork net;
+
+  // reusable buffers for the reference
+  protected double[] input;
+  protected double[] output;
+
+  /**
+   * Builds a reference on the given network, which it only reads
+   *
+   * @param net The network
+   */
+  public ExpectimaxCheckDriver(FlatNetwork net) {
+    this.net = net.share();
+    this.input = new double[net.getInputs()];
+    this.output = new double[net.getOutputs()];
+  }
+
+  /**
+   * Returns the equity of the given position for the given player,
+   * with a full forward pass
+   *
+   * @param board The position
+   * @param player The player
+   * @return The equity for that player
+   */
+  protected double evaluate(Board board, int player) {
+    if (board.isGameOver())
+      return Utility.computeEquity(Utility.getOutcome(board, player, output));
+
+    return Utility.computeEquity(net.getValue(BackPropPlayer2.getInput(board, player, input), output));
+  }
+
+  /**
+   * Returns the equity of the given position after the player's move,
+   * for the player, averaged over the opponent's rolls, each answered
+   * by the reply which is worst for the player at one ply and then
+   * searched depth - 1 plies from the opponent's side.
+   *
+   * @param board The position after the player's move
+   * @param player The player
+   * @param depth The plies to search, at least 2
+   * @return The expected equity
+   */
+  public double expectation(Board board, int player, int depth) {
+    if (board.isGameOver())
+      return evaluate(board, player);
+
+    int other = Board.getOtherPlayer(player);
+    MoveGenerator replies = new MoveGenerator();
+    double total = 0;
+
+    for (Dice dice : Dice.getRolls()) {
+      int positions = replies.generate(other, dice, board);
+      double worst = Double.POSITIVE_INFINITY;
+      int reply = 0;
+
+      for (int i=0; i<positions; i++) {
+        double equity = evaluate(replies.getBoard(i), player);
+
+        if (equity < worst) {
+          worst = equity;
+          reply = i;
+        }
+      }
+
+      total += dice.getWeight() * (depth == 2 ? worst : -expectation(replies.getBoard(reply), other, depth - 1));
+    }
+
+    return total / 36;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    String network = args.length > 1 ? args[1] : "SavedNN";
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 20170424;
+
+    FlatNetwork net = FlatNetwork.readFrom(network);
+    ExpectimaxCheckDriver reference = new ExpectimaxCheckDriver(net);
+    ExpectimaxPlayer expectimax = new ExpectimaxPlayer(net, ExpectimaxPlayer.DEFAULT_CANDIDATES, 3);
+
+    RandomDiceSource dice = new RandomDiceSource(seed);
+    Random random = new Random(seed);
+    MoveGenerator generator = new MoveGenerator();
+    Board board = new Board();
+    int player = Board.BLACK;
+    double[] worst = new double[4];
+    int[] checked = new int[4];
+    long start = System.nanoTime();
+
+    for (int p=0; p<count; p++) {
+      int positions = generator.generate(player, dice.roll(), board);
+      Board next = new Board();
+      next.copyFrom(generator.getBoard(random.nextInt(positions)));
+
+      for (int depth=2; depth<=3; depth++) {
+        if (depth == 3 && p % 10 != 0)
+          continue;
+
+        double expected = reference.expectation(next, player, depth);
+        double actual = expectimax.getExpectation(next, player, depth);
+
+        worst[depth] = Math.max(worst[depth], Math.abs(expected - actual));
+        checked[depth]++;
+      }
+
+      if (next.isGameOver()) {
+        board = new Board();
+        player = Board.BLACK;
+      } else {
+        board = next;
+        player = Board.getOtherPlayer(player);
+      }
+    }
+
+    boolean failed = false;
+
+    for (int depth=2; depth<=3; depth++) {
+      boolean ok = worst[depth] <= TOLERANCE;
+
+      System.out.printf("%d plies: %d positions, largest difference from the reference %.2e %s%n",
+                        depth, checked[depth], worst[depth], ok ? "ok" : "MISMATCH");
+      failed |= ! ok;
+    }
+
+    System.out.printf("Checked in %.1fs%n", (System.nanoTime() - start) / 1e9);
+
+    if (failed)
+      System.exit(1);
+  }
+}
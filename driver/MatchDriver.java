@@ -0,0 +1,115 @@
+package driver;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import board.*;
+import game.Backgammon;
+import move.Move;
+import net.*;
+import player.*;
+
+/**
+ * Plays the ExpectimaxPlayer against the 1-ply BackPropPlayer2 of the
+ * same network, and reports how often the searching player wins and how
+ * long it takes to move.  The games are played in pairs on the same
+ * dice, once with each player as black, so that the luck of the dice
+ * mostly cancels out.
+ *
+ * Usage: java driver.MatchDriver [games] [candidates] [threshold] [limit] [plies] [threads] [audit] [network] [seed]
+ *
+ * games (pairs of games) defaults to 100.  Before each ply beyond the
+ * first, the best candidates (ExpectimaxPlayer.DEFAULT_CANDIDATES) and
+ * those within threshold (0) of the best, up to limit (candidates) of
+ * them, are kept.  plies defaults to ExpectimaxPlayer.DEFAULT_PLIES,
+ * threads to 1 (searching on the game's thread, more searching on a
+ * ForkJoinPool of that many), audit to 0 (every how many moves all the
+ * candidates are also searched at the full depth, to count how often
+ * the filters pruned the best one), network to SavedNN and seed to a
+ * fixed one.
+ */
+public class MatchDriver {
+
+  public static void main(String[] args) throws Exception {
+    int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int candidates = args.length > 1 ? Integer.parseInt(args[1]) : ExpectimaxPlayer.DEFAULT_CANDIDATES;
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+    int limit = args.length > 3 ? Integer.parseInt(args[3]) : candidates;
+    int plies = args.length > 4 ? Integer.parseInt(args[4]) : ExpectimaxPlayer.DEFAULT_PLIES;
+    int threads = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+    int audit = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+    String network = args.length > 7 ? args[7] : "SavedNN";
+    long seed = args.length > 8 ? Long.parseLong(args[8]) : 20170424;
+
+    FlatNetwork net = FlatNetwork.readFrom(network);
+    ExpectimaxPlayer expectimax = new ExpectimaxPlayer(net, candidates, plies);
+    MoveFilter[] filters = new MoveFilter[plies - 1];
+    long[] elapsed = new long[1];
+
+    for (int f=0; f<filters.length; f++)
+      filters[f] = new MoveFilter(candidates, threshold, limit);
+
+    expectimax.setFilters(filters);
+    expectimax.setAudit(audit);
+
+    if (threads > 1)
+      expectimax.setPool(new ForkJoinPool(threads));
+
+    // only the searching player's moves are timed
+    Player searcher = new Player() {
+      public Move move(Backgammon backgammon) {
+        long start = System.nanoTime();
+        Move move = expectimax.move(backgammon);
+
+        elapsed[0] += System.nanoTime() - start;
+
+        return move;
+      }
+
+      public void won(Backgammon game) {}
+
+      public void lost(Backgammon game) {}
+    };
+
+    BackPropPlayer2 baseline = new BackPropPlayer2(0, 0, false, net.share());
+    SplittableRandom seeds = new SplittableRandom(seed);
+
+    Backgammon black = new Backgammon(searcher, baseline);
+    Backgammon white = new Backgammon(baseline, searcher);
+
+    int won = 0;
+
+    for (int g=0; g<games; g++) {
+      long game = seeds.nextLong();
+
+      for (Backgammon match : new Backgammon[] {black, white}) {
+        match.setDiceSource(new RandomDiceSource(game));
+        match.reset();
+
+        if (match.run() == searcher)
+          won++;
+      }
+    }
+
+    double rate = (double) won / (2 * games);
+    long moves = Math.max(1, expectimax.getMoves());
+
+    System.out.printf("Expectimax (%d plies) won %d of %d games against 1 ply, %.1f%% +- %.1f%%%n", plies,
+                      won, 2 * games, 100 * rate, 100 * 2 * Math.sqrt(rate * (1 - rate) / (2 * games)));
+    System.out.printf("%,d moves on %d threads, %.2f ms and %,d evaluations per move%n", expectimax.getMoves(), threads,
+                      elapsed[0] / 1e6 / moves, expectimax.getEvaluations() / moves);
+
+    for (int f=0; f<filters.length; f++)
+      System.out.println("Filter before ply " + (f + 2) + ": " + filters[f]);
+
+    System.out.printf("The deeper plies changed %,d moves from the best at 1 ply%n", expectimax.getChanged());
+
+    if (expectimax.getAudits() > 0)
+      System.out.printf("%,d audits: the best move at %d plies was pruned in %,d (%.1f%%), which lost %.4f equity on average%n",
+                        expectimax.getAudits(), plies, expectimax.getPruned(), 100.0 * expectimax.getPruned() / expectimax.getAudits(),
+                        expectimax.getLoss() / Math.max(1, expectimax.getPruned()));
+
+    if (expectimax.getPool() != null)
+      expectimax.getPool().shutdown();
+  }
+}
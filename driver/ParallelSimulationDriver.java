@@ -0,0 +1,107 @@
+package driver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import board.RandomDiceSource;
+import game.Backgammon;
+import net.FlatNetwork;
+import net.FloatNetwork;
+import player.BackPropPlayer2;
+
+/*
+ * Self-play training on several threads at once (Hogwild style): every thread runs its own
+ * games between its own two players, each with its own eligibility traces, and all of them
+ * apply their TD updates directly to one shared set of weights, without locking. Each thread
+ * also rolls its own dice, split from one seeded source. With -float the network is trained in
+ * float32 (see net.FloatNetwork), with the SIMD kernels if the JVM was started with
+ * --add-modules jdk.incubator.vector.
+ *
+ * Usage: ParallelSimulationDriver [threads] [games] [seed] [-float]
+ */
+public class ParallelSimulationDriver {
+	  // the weights trained by all of the threads
+	  protected FlatNetwork net;
+	  // the same weights in float32, trained instead of net if not null
+	  protected FloatNetwork single;
+	  // the number of threads (and games in flight)
+	  protected int threads;
+	  // the total number of games to play
+	  protected int games;
+	  // the number of games started so far, across all threads
+	  protected AtomicInteger started = new AtomicInteger();
+	  // the source the dice of each thread are split from
+	  protected RandomDiceSource dice;
+
+	  public ParallelSimulationDriver(FlatNetwork net, int threads, int games, RandomDiceSource dice) {
+		    this.net = net;
+		    this.threads = threads;
+		    this.games = games;
+		    this.dice = dice;
+		  }
+
+	  /*
+	   * Plays games on one thread until the total has been started by all threads together
+	   */
+	  protected void play(RandomDiceSource source) {
+		  //Both players of a game run on this thread, so they can share one view of the weights
+		  Backgammon game;
+		  if (single != null) {
+			  FloatNetwork view = single.share();
+			  game = new Backgammon(new BackPropPlayer2(0.7,0.1,true,view), new BackPropPlayer2(0.7,0.1,true,view), source);
+		  } else {
+			  FlatNetwork view = net.share();
+			  game = new Backgammon(new BackPropPlayer2(0.7,0.1,true,view), new BackPropPlayer2(0.7,0.1,true,view), source);
+		  }
+		  int k;
+		  while ((k = started.getAndIncrement()) < games){
+			  	game.run();
+			  	game.reset();
+			  	if ((k+1) % 10000 == 0) System.out.println("Games started: "+ (k+1));
+		  	}
+	  }
+
+	  protected void go() throws Exception {
+
+		  long start = System.currentTimeMillis();
+		  ExecutorService pool = Executors.newFixedThreadPool(threads);
+		  Future<?>[] workers = new Future<?>[threads];
+		  for (int t = 0; t < threads; t++) {
+			  RandomDiceSource source = dice.split();
+			  workers[t] = pool.submit(() -> play(source));
+		  }
+		  try {
+			  //get() rethrows anything a worker died with
+			  for (Future<?> worker : workers)
+				  worker.get();
+		  } finally {
+			  pool.shutdown();
+		  }
+		  long elapsedTime = System.currentTimeMillis() - start;
+		  System.out.println(games +" games on "+ threads +" threads, total time in secs: "+ elapsedTime/1000
+				  +" ("+ (games*1000L/Math.max(1, elapsedTime)) +" games/sec)");
+
+		  if (single != null) single.copyTo(net);
+		  net.writeTo("SavedNN");
+		  }
+
+	  public static void main(String[] options) throws Exception {
+		  List<String> list = new ArrayList<String>(Arrays.asList(options));
+		  boolean single = list.remove("-float");
+		  String[] args = list.toArray(new String[0]);
+		  int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		  int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		  RandomDiceSource dice = args.length > 2 ? new RandomDiceSource(Long.parseLong(args[2])) : new RandomDiceSource();
+
+		    ParallelSimulationDriver driver = new ParallelSimulationDriver(BackPropPlayer2.loadNetwork(), threads, games, dice);
+		    if (single) driver.single = new FloatNetwork(driver.net);
+
+		    driver.go();
+		  }
+
+}
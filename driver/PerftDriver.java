@@ -0,0 +1,242 @@
+package driver;
+
+import board.*;
+import move.*;
+
+/**
+ * Counts the positions reachable from a set of fixed reference positions,
+ * for every one of the 21 distinct dice rolls, down to a given depth
+ * (alternating players, each ply one roll and one move).  Reports the
+ * positions generated per second and compares the counts against golden
+ * values, so that any change to move generation which changes the set of
+ * positions it produces is caught.
+ *
+ * Usage: java driver.PerftDriver [depth] [repetitions] [-factory] [-golden]
+ *
+ * -factory generates with MovementFactory.getAllMoves instead of
+ * MoveGenerator, and -golden prints the counts in the form of the
+ * GOLDEN table below.
+ */
+public class PerftDriver {
+  
+  // the names of the reference positions
+  protected static final String[] NAMES = new String[] {"opening", "bar entry", "race", "bear-off", "middle game"};
+  
+  // the reference positions, as the arguments to the Board constructor
+  protected static final int[][] SPIKES = new int[][] {
+    {2, 0, 0, 0, 0, -5, 0, -3, 0, 0, 0, 5, -5, 0, 0, 0, 3, 0, 5, 0, 0, 0, 0, -2},
+    {2, 0, 0, 0, 0, -4, 0, -3, 0, 0, 0, 2, -5, 0, 0, 0, 2, 0, 3, 2, 2, 2, 0, -2},
+    {-2, -2, -3, -3, -3, -2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 3, 3, 3, 2, 2, 2},
+    {0, -1, 0, -4, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, 0, 3},
+    {1, 0, -2, 0, 2, -4, 0, -2, 0, 1, -1, 0, -3, 3, 0, -1, 2, 0, 3, 0, 2, -1, 1, 0}
+  };
+  protected static final int[][] BAR = new int[][] {{0, 0}, {0, 1}, {0, 0}, {0, 0}, {0, 1}};
+  protected static final int[][] OFF = new int[][] {{0, 0}, {0, 0}, {0, 0}, {10, 10}, {0, 0}};
+  protected static final int[] PLAYER = new int[] {Board.BLACK, Board.BLACK, Board.WHITE, Board.WHITE, Board.WHITE};
+  
+  // the expected counts for each reference position and each roll (in the
+  // order of getRolls), for depths 1 and 2
+  protected static final long[][][] GOLDEN = new long[][][] {
+    {
+      {42, 75, 73, 52, 4, 11, 15, 16, 14, 8, 10, 17, 18, 8, 14, 17, 9, 14, 9, 14, 7},
+      {18498, 34136, 32063, 22620, 1742, 4570, 7070, 7459, 6586, 3744, 4701, 7974, 8409, 3691, 6647, 7988, 4118, 6659, 4194, 6613, 3300}
+    },
+    {
+      {17, 17, 1, 1, 1, 1, 6, 3, 3, 2, 3, 3, 3, 3, 3, 1, 1, 1, 1, 1, 1},
+      {11888, 12278, 733, 733, 733, 733, 4327, 2204, 2203, 1469, 2212, 2204, 2203, 2210, 2529, 733, 733, 733, 733, 733, 733}
+    },
+    {
+      {108, 59, 29, 12, 3, 1, 26, 21, 16, 11, 6, 18, 14, 10, 5, 12, 8, 4, 6, 3, 2},
+      {39744, 21712, 10672, 4416, 1104, 368, 9568, 7728, 5888, 4048, 2208, 6624, 5152, 3680, 1840, 4416, 2944, 1472, 2208, 1104, 736}
+    },
+    {
+      {5, 1, 1, 1, 1, 1, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
+      {205, 41, 41, 41, 41, 41, 82, 82, 82, 82, 82, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41}
+    },
+    {
+      {252, 158, 73, 92, 58, 53, 45, 39, 43, 39, 37, 34, 37, 32, 34, 30, 26, 27, 29, 32, 28},
+      {33394, 29730, 14452, 22850, 11448, 3213, 10265, 8587, 10529, 7943, 5895, 8421, 9696, 7326, 6229, 8460, 6619, 4723, 7351, 6342, 4878}
+    }
+  };
+  
+  // the 21 distinct rolls, and how many of the 36 outcomes give each
+  protected static Dice[] rolls = getRolls();
+  
+  // whether to count with MovementFactory rather than MoveGenerator
+  protected boolean factory;
+  
+  // one generator per depth, since each keeps its results until the next call
+  protected MoveGenerator[] generators;
+  
+  /**
+   * Builds a driver counting to the given depth
+   *
+   * @param depth The depth to count to
+   * @param factory Whether to count with MovementFactory
+   */
+  public PerftDriver(int depth, boolean factory) {
+    this.factory = factory;
+    this.generators = new MoveGenerator[depth];
+    
+    for (int i=0; i<depth; i++)
+      generators[i] = new MoveGenerator();
+  }
+  
+  /**
+   * Returns the 21 distinct dice rolls, doubles first
+   *
+   * @return The distinct rolls
+   */
+  public static Dice[] getRolls() {
+    return Dice.getRolls();
+  }
+  
+  /**
+   * Returns the given reference position
+   *
+   * @param index The index of the position
+   * @return The board
+   */
+  public static Board getPosition(int index) {
+    return new Board(SPIKES[index], BAR[index], OFF[index]);
+  }
+  
+  /**
+   * Counts the positions reached after depth plies, where the first
+   * ply uses the given roll and each later ply every roll.  Finished
+   * games are counted once and not expanded.
+   *
+   * @param board The board
+   * @param player The player to move
+   * @param dice The roll of the first ply
+   * @param depth The number of plies
+   * @return The number of positions
+   */
+  public long count(Board board, int player, Dice dice, int depth) {
+    if (factory) {
+      Move[] moves = MovementFactory.getAllMoves(player, dice, board);
+      long result = 0;
+      
+      // getAllMoves may return the same position through different dice
+      java.util.Set<Board> seen = new java.util.HashSet<Board>();
+      
+      for (int i=0; i<moves.length; i++)
+        if (seen.add(moves[i].getCurrentBoard()))
+          result += expand(moves[i].getCurrentBoard(), player, depth);
+      
+      return result;
+    }
+    
+    MoveGenerator generator = generators[generators.length - depth];
+    int size = generator.generate(player, dice, board);
+    
+    if (depth == 1)
+      return size;
+    
+    long result = 0;
+    
+    for (int i=0; i<size; i++)
+      result += expand(generator.getBoard(i), player, depth);
+    
+    return result;
+  }
+  
+  /**
+   * Counts the positions reached from a position after the remaining
+   * plies, over every roll
+   *
+   * @param board The position
+   * @param player The player who just moved
+   * @param depth The plies, including the one just made
+   * @return The number of positions
+   */
+  protected long expand(Board board, int player, int depth) {
+    if ((depth == 1) || board.isGameOver())
+      return 1;
+    
+    long result = 0;
+    
+    for (int i=0; i<rolls.length; i++)
+      result += count(board, Board.getOtherPlayer(player), rolls[i], depth - 1);
+    
+    return result;
+  }
+  
+  public static void main(String[] args) {
+    int depth = 2;
+    int repetitions = 1;
+    boolean factory = false;
+    boolean golden = false;
+    int number = 0;
+    
+    for (int i=0; i<args.length; i++) {
+      if (args[i].equals("-factory"))
+        factory = true;
+      else if (args[i].equals("-golden"))
+        golden = true;
+      else if (number++ == 0)
+        depth = Integer.parseInt(args[i]);
+      else
+        repetitions = Integer.parseInt(args[i]);
+    }
+    
+    PerftDriver driver = new PerftDriver(depth, factory);
+    boolean failed = false;
+    
+    for (int r=0; r<repetitions; r++) {
+      long total = 0;
+      long start = System.nanoTime();
+      
+      if (golden)
+        System.out.println("  protected static final long[][][] GOLDEN = new long[][][] {");
+      
+      for (int p=0; p<SPIKES.length; p++) {
+        Board board = getPosition(p);
+        long[] counts = new long[rolls.length];
+        long sum = 0;
+        
+        for (int i=0; i<rolls.length; i++) {
+          counts[i] = driver.count(board, PLAYER[p], rolls[i], depth);
+          sum += counts[i];
+        }
+        
+        total += sum;
+        
+        if (golden) {
+          System.out.println("    {");
+          
+          for (int d=1; d<=2; d++) {
+            System.out.print("      {");
+            
+            for (int i=0; i<rolls.length; i++)
+              System.out.print((i > 0 ? ", " : "") + (d == depth ? counts[i] : new PerftDriver(d, false).count(board, PLAYER[p], rolls[i], d)));
+            
+            System.out.println("}" + (d == 1 ? "," : ""));
+          }
+          
+          System.out.println("    }" + (p < SPIKES.length - 1 ? "," : ""));
+        } else {
+          String result = "";
+          
+          if ((depth <= 2) && (p < GOLDEN.length))
+            for (int i=0; i<rolls.length; i++)
+              if (counts[i] != GOLDEN[p][depth-1][i]) {
+                result += " MISMATCH " + rolls[i].getDie1() + "-" + rolls[i].getDie2() + ": " + counts[i] + " (expected " + GOLDEN[p][depth-1][i] + ")";
+                failed = true;
+              }
+          
+          System.out.println(NAMES[p] + ": " + sum + (result.length() > 0 ? result : ((depth <= 2) && (p < GOLDEN.length) ? " ok" : "")));
+        }
+      }
+      
+      if (golden)
+        System.out.println("  };");
+      
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.println("Depth " + depth + ": " + total + " positions in " + seconds + "s, " + (long) (total / seconds) + " positions/s");
+    }
+    
+    if (failed)
+      System.exit(1);
+  }
+}
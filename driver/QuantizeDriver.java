@@ -0,0 +1,187 @@
+package driver;
+
+import java.io.*;
+import java.util.*;
+
+import board.*;
+import move.*;
+import net.*;
+import player.*;
+
+/**
+ * Exports a trained network as a QuantizedNetwork, and reports how far
+ * the quantized (and the float32) network's outputs and move choices are
+ * from the double precision network's, over the candidate moves of the
+ * positions of seeded random games.
+ *
+ * Usage: java driver.QuantizeDriver [network] [output] [bits] [rolls]
+ *
+ * network defaults to SavedNN, output to network.q8 or network.q16,
+ * bits (of the weights, 8 or 16) to 16 and rolls to 10000.
+ */
+public class QuantizeDriver {
+
+  // the seed of the games the positions are taken from
+  protected static final long SEED = 20170424;
+
+  // the networks compared
+  protected FlatNetwork flat;
+  protected FloatNetwork single;
+  protected QuantizedNetwork quantized;
+
+  // the candidates of each roll, encoded from the perspective they are scored from
+  protected List<SparseInput[]> rolls = new ArrayList<SparseInput[]>();
+
+  /**
+   * Builds a driver comparing the provided networks
+   *
+   * @param flat The trained network
+   * @param quantized Its quantized version
+   */
+  public QuantizeDriver(FlatNetwork flat, QuantizedNetwork quantized) {
+    this.flat = flat;
+    this.single = new FloatNetwork(flat);
+    this.quantized = quantized;
+  }
+
+  /**
+   * Collects the candidates of count rolls, from random games.
+   *
+   * @param count The number of rolls
+   */
+  protected void collect(int count) {
+    RandomDiceSource dice = new RandomDiceSource(SEED);
+    Random random = new Random(SEED);
+    MoveGenerator generator = new MoveGenerator();
+    Board board = new Board();
+    int player = Board.BLACK;
+
+    while (rolls.size() < count) {
+      int positions = generator.generate(player, dice.roll(), board);
+      int other = Board.getOtherPlayer(player);
+      SparseInput[] candidates = new SparseInput[positions];
+
+      for (int i=0; i<positions; i++)
+        candidates[i] = BackPropPlayer2.getSparseInput(generator.getBoard(i), other, new SparseInput(flat.getInputs()));
+
+      if (positions > 1)
+        rolls.add(candidates);
+
+      Board next = new Board();
+      next.copyFrom(generator.getBoard(random.nextInt(positions)));
+
+      if (next.isGameOver()) {
+        board = new Board();
+        player = Board.BLACK;
+      } else {
+        board = next;
+        player = other;
+      }
+    }
+  }
+
+  /**
+   * Prints how the given network compares with the double network: the
+   * error of its outputs, how often it picks the same move, and what
+   * its picks lose, by the double network's utility, against the
+   * double network's own.
+   *
+   * @param name The name of the network
+   * @param evaluator The network
+   */
+  protected void report(String name, Evaluator evaluator) {
+    double[] expected = new double[flat.getOutputs()];
+    double[] actual = new double[flat.getOutputs()];
+    double max = 0, total = 0, loss = 0, worst = 0;
+    long count = 0, agree = 0;
+
+    for (SparseInput[] candidates : rolls) {
+      double[] utility = new double[candidates.length];
+      int best = 0, chosen = 0;
+      double chosenUtility = Double.NEGATIVE_INFINITY;
+
+      for (int i=0; i<candidates.length; i++) {
+        flat.getValue(candidates[i], expected);
+        evaluator.getValue(candidates[i], actual);
+
+        for (int k=0; k<expected.length; k++) {
+          double error = Math.abs(expected[k] - actual[k]);
+          max = Math.max(max, error);
+          total += error;
+          count += 1;
+        }
+
+        utility[i] = Utility.computeUtility(expected);
+
+        if (utility[i] > utility[best])
+          best = i;
+
+        if (Utility.computeUtility(actual) > chosenUtility) {
+          chosen = i;
+          chosenUtility = Utility.computeUtility(actual);
+        }
+      }
+
+      if (best == chosen)
+        agree += 1;
+
+      loss += utility[best] - utility[chosen];
+      worst = Math.max(worst, utility[best] - utility[chosen]);
+    }
+
+    System.out.printf("%-8s max error %.2e, mean error %.2e, same move %6.2f%%, mean loss %.2e, worst loss %.2e, %,d evaluations/s%n",
+                      name, max, total / count, 100.0 * agree / rolls.size(), loss / rolls.size(), worst, getSpeed(evaluator));
+  }
+
+  /**
+   * Returns the number of evaluations per second of the given network
+   *
+   * @param evaluator The network
+   * @return The evaluations per second
+   */
+  protected long getSpeed(Evaluator evaluator) {
+    double[] output = new double[evaluator.getOutputs()];
+    long evaluations = 0;
+    long start = System.nanoTime();
+
+    // a few passes, the first of which mostly warms up the JIT
+    for (int pass=0; pass<5; pass++) {
+      if (pass == 1) {
+        evaluations = 0;
+        start = System.nanoTime();
+      }
+
+      for (SparseInput[] candidates : rolls)
+        for (int i=0; i<candidates.length; i++)
+          evaluator.getValue(candidates[i], output);
+
+      for (SparseInput[] candidates : rolls)
+        evaluations += candidates.length;
+    }
+
+    return evaluations * 1000000000L / Math.max(1, System.nanoTime() - start);
+  }
+
+  public static void main(String[] args) throws Exception {
+    String input = args.length > 0 ? args[0] : "SavedNN";
+    int bits = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+    String output = args.length > 1 ? args[1] : input + ".q" + bits;
+    int count = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+
+    FlatNetwork flat = FlatNetwork.readFrom(input);
+    new QuantizedNetwork(flat, bits).writeTo(output);
+
+    // report on the network as it is read back by deployments
+    QuantizedNetwork quantized = QuantizedNetwork.readFrom(output);
+    System.out.println("Wrote " + output + " (" + new File(output).length() + " bytes, scales "
+                       + Arrays.toString(quantized.scales) + ")");
+
+    QuantizeDriver driver = new QuantizeDriver(flat, quantized);
+    driver.collect(count);
+    System.out.println("Compared with the double network on the candidates of " + driver.rolls.size() + " rolls:");
+
+    driver.report("double", flat);
+    driver.report("float32", driver.single);
+    driver.report("int" + bits, quantized);
+  }
+}
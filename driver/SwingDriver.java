@@ -39,11 +39,20 @@ public class SwingDriver extends JFrame {
   protected Thread game;
   
   public SwingDriver() {
+    this(null);
+  }
+  
+  /**
+   * Builds a driver in which the human plays against the given player
+   *
+   * @param opponent The computer player, or null for a random one
+   */
+  public SwingDriver(Player opponent) {
     setTitle("Comp440 Backgammon");
     setResizable(false);
     
     this.player = new SwingHumanPlayer();
-    this.backgammon = new Backgammon(player, new SwingRandomPlayer()); //NeuralNetworkPlayer(this, "neural.net"));
+    this.backgammon = new Backgammon(player, (opponent == null) ? new SwingRandomPlayer() : new SwingComputerPlayer(opponent));
     this.panel = new JPanel();
     this.board = new BoardPanel();
     this.status = new StatusPanel();
@@ -131,11 +140,26 @@ public class SwingDriver extends JFrame {
     show();
   }
   
-  public static void main(String[] args) throws IOException {
+  /**
+   * Usage: java driver.SwingDriver [plies] [threads]
+   *
+   * With no arguments the human plays a random player; given plies, an
+   * ExpectimaxPlayer searching SavedNN that deep on threads threads (by
+   * default, one per processor).
+   */
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
     System.setProperty("apple.laf.useScreenMenuBar", "true");
     System.setProperty("com.apple.mrj.application.apple.menu.about.name", "Comp440 Backgammon");
     
-    SwingDriver driver = new SwingDriver();
+    SwingDriver driver;
+    
+    if (args.length > 0) {
+      int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+      
+      driver = new SwingDriver(ExpectimaxPlayer.readFrom("SavedNN", Integer.parseInt(args[0]), threads));
+    } else {
+      driver = new SwingDriver();
+    }
   }
   
   /**
@@ -668,6 +692,30 @@ public class SwingDriver extends JFrame {
     }
   }
   
+  protected class SwingComputerPlayer implements Player {
+    
+    // the player choosing the moves
+    protected Player player;
+    
+    public SwingComputerPlayer(Player player) {
+      this.player = player;
+    }
+    
+    public Move move(Backgammon backgammon) {
+      SwingDriver.this.repaint();
+      
+      return player.move(backgammon);
+    }
+    
+    public void won(Backgammon game) {
+      player.won(game);
+    }
+    
+    public void lost(Backgammon game) {
+      player.lost(game);
+    }
+  }
+  
   protected class SwingRandomPlayer extends RandomPlayer {
     
     public int DELAY = 100;
@@ -0,0 +1,177 @@
+package driver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import board.RandomDiceSource;
+import game.Backgammon;
+import net.FlatNetwork;
+import net.FloatNetwork;
+import player.BackPropPlayer2;
+
+/*
+ * Self-play training on several threads with synchronous updates: in each round every worker
+ * plays its games against the same read-only snapshot of the network, adding the updates its
+ * players' backprop computes into its own deltas. Once all workers are done the deltas are
+ * added to the network in worker order, which republishes it for the next round. Unlike
+ * ParallelSimulationDriver no weight is ever written while it is being read, and the merged
+ * weights do not depend on the order in which the threads finish. As each worker also rolls
+ * its own dice, split in worker order from one seeded source, a run with the same seed,
+ * threads and round size always trains the same network. With -float the network is trained,
+ * and the deltas accumulated, in float32 (see net.FloatNetwork and ParallelSimulationDriver).
+ *
+ * Usage: SynchronousSimulationDriver [threads] [games] [games per worker per round] [seed] [-float]
+ */
+public class SynchronousSimulationDriver {
+	  // the network, only written between rounds
+	  protected FlatNetwork net;
+	  // the same weights in float32, trained instead of net if not null
+	  protected FloatNetwork single;
+	  // the number of games each worker plays per round
+	  protected int interval;
+	  // the total number of games to play
+	  protected int games;
+	  protected ExecutorService pool;
+	  protected Worker[] workers;
+
+	  /*
+	   * One thread's games: its own players on its own view of the network, and the
+	   * updates they have accumulated since the last merge
+	   */
+	  protected class Worker implements Callable<Void> {
+		  protected Backgammon game;
+		  protected double[][] deltas;
+		  // the updates in float32, when training single
+		  protected float[][] singledeltas;
+		  // the number of games to play in the current round
+		  protected int count;
+
+		  public Worker(RandomDiceSource dice) {
+			  BackPropPlayer2 black, white;
+			  if (single != null) {
+				  FloatNetwork view = single.share();
+				  black = new BackPropPlayer2(0.7,0.1,true,view);
+				  white = new BackPropPlayer2(0.7,0.1,true,view);
+				  singledeltas = new float[view.getLayers()][];
+				  for (int l = 0; l < singledeltas.length; l++)
+					  singledeltas[l] = new float[view.weights[l].length];
+				  black.setDeltas(singledeltas);
+				  white.setDeltas(singledeltas);
+			  } else {
+				  FlatNetwork view = net.share();
+				  black = new BackPropPlayer2(0.7,0.1,true,view);
+				  white = new BackPropPlayer2(0.7,0.1,true,view);
+				  deltas = new double[view.getLayers()][];
+				  for (int l = 0; l < deltas.length; l++)
+					  deltas[l] = new double[view.weights[l].length];
+				  black.setDeltas(deltas);
+				  white.setDeltas(deltas);
+			  }
+			  game = new Backgammon(black, white, dice);
+		  }
+
+		  public Void call() {
+			  for (int k = 0; k < count; k++) {
+				  game.run();
+				  game.reset();
+			  }
+			  return null;
+		  }
+	  }
+
+	  public SynchronousSimulationDriver(FlatNetwork net, int threads, int games, int interval, RandomDiceSource dice) {
+		    this(net, null, threads, games, interval, dice);
+		  }
+
+	  /*
+	   * Trains single, a float32 copy of net, instead of net when it is not null; net gets
+	   * its weights back at the end
+	   */
+	  public SynchronousSimulationDriver(FlatNetwork net, FloatNetwork single, int threads, int games, int interval, RandomDiceSource dice) {
+		    this.net = net;
+		    this.single = single;
+		    this.games = games;
+		    this.interval = interval;
+		    this.pool = Executors.newFixedThreadPool(threads);
+		    this.workers = new Worker[threads];
+		    for (int t = 0; t < threads; t++)
+		    	workers[t] = new Worker(dice.split());
+		  }
+
+	  /*
+	   * Adds the deltas of every worker to the network, always in the same order, and clears them
+	   */
+	  protected void merge() {
+		  if (single != null) {
+			  for (Worker worker : workers)
+				  for (int l = 0; l < worker.singledeltas.length; l++) {
+					  float[] w = single.weights[l], d = worker.singledeltas[l];
+					  for (int i = 0; i < w.length; i++) {
+						  w[i] += d[i];
+						  d[i] = 0.0f;
+					  }
+				  }
+			  return;
+		  }
+		  for (Worker worker : workers)
+			  for (int l = 0; l < worker.deltas.length; l++) {
+				  double[] w = net.weights[l], d = worker.deltas[l];
+				  for (int i = 0; i < w.length; i++) {
+					  w[i] += d[i];
+					  d[i] = 0.0;
+				  }
+			  }
+	  }
+
+	  protected void go() throws Exception {
+
+		  long start = System.currentTimeMillis();
+		  int played = 0, rounds = 0;
+		  try {
+			  while (played < games) {
+				  List<Worker> round = new ArrayList<Worker>();
+				  int remaining = games - played;
+				  for (int t = 0; t < workers.length; t++) {
+					  //the last round is cut short, always taking from the last workers
+					  workers[t].count = Math.min(interval, Math.max(0, remaining - t*interval));
+					  played += workers[t].count;
+					  round.add(workers[t]);
+				  }
+				  //get() rethrows anything a worker died with
+				  for (Future<Void> result : pool.invokeAll(round))
+					  result.get();
+				  merge();
+				  rounds += 1;
+			  }
+		  } finally {
+			  pool.shutdown();
+		  }
+		  long elapsedTime = System.currentTimeMillis() - start;
+		  System.out.println(games +" games in "+ rounds +" rounds on "+ workers.length +" threads, total time in secs: "+ elapsedTime/1000
+				  +" ("+ (games*1000L/Math.max(1, elapsedTime)) +" games/sec)");
+
+		  if (single != null) single.copyTo(net);
+		  net.writeTo("SavedNN");
+		  }
+
+	  public static void main(String[] options) throws Exception {
+		  List<String> list = new ArrayList<String>(Arrays.asList(options));
+		  boolean single = list.remove("-float");
+		  String[] args = list.toArray(new String[0]);
+		  int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		  int games = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		  int interval = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		  RandomDiceSource dice = args.length > 3 ? new RandomDiceSource(Long.parseLong(args[3])) : new RandomDiceSource();
+
+		    FlatNetwork net = BackPropPlayer2.loadNetwork();
+		    SynchronousSimulationDriver driver = new SynchronousSimulationDriver(net, single ? new FloatNetwork(net) : null, threads, games, interval, dice);
+
+		    driver.go();
+		  }
+
+}
@@ -4,6 +4,8 @@ import java.io.IOException;
 
 import board.Board;
 import game.Backgammon;
+import net.EvaluationCache;
+import net.QuantizedNetwork;
 import player.BackPropPlayer2;
 import player.Player;
 import player.RandomPlayer;
@@ -11,9 +13,21 @@ import player.RandomPlayer;
 public class TestStrengthDriver {
 	  // the Backgammon used to run this driver, one for each instance of SimulationDrover
 	  protected Backgammon game;
+	  // the network's evaluations, which never go stale as it does not learn here
+	  protected EvaluationCache cache = new EvaluationCache(1 << 16);
 	  
 	  public TestStrengthDriver() {
-		    this.game = new Backgammon(new BackPropPlayer2(0.7,0.1,false), new RandomPlayer());		    
+		    this(new BackPropPlayer2(0.7,0.1,false));
+		  }
+
+	  // plays a quantized network (written by QuantizeDriver) instead of SavedNN
+	  public TestStrengthDriver(String quantized) throws IOException {
+		    this(new BackPropPlayer2(QuantizedNetwork.readFrom(quantized)));
+		  }
+
+	  protected TestStrengthDriver(BackPropPlayer2 player) {
+		    player.setCache(cache);
+		    this.game = new Backgammon(player, new RandomPlayer());
 		  }
 
 	  protected void go() throws IOException {
@@ -34,13 +48,14 @@ public class TestStrengthDriver {
 		  long elapsedTime = System.currentTimeMillis() - start;
 		  System.out.println("Black won "+count/(double)k+" percent of the times");
 		  System.out.println("Total time in mins: "+ elapsedTime/60000);
+		  System.out.println("Evaluation cache: "+ cache);
 		  
 		  }
 	  
 	  public static void main(String[] args) throws IOException {
 		  
 		  //Each simulation-driver instance is a separate simulation, call multiple to run multiple simulations
-		    TestStrengthDriver driver = new TestStrengthDriver();
+		    TestStrengthDriver driver = (args.length > 0) ? new TestStrengthDriver(args[0]) : new TestStrengthDriver();
 		    
 		    driver.go(); //The go command for each simulation thread
 		  }
@@ -24,9 +24,18 @@ public class TextDriver {
   protected Thread game;
   
   public TextDriver() {
+    this(new BackPropPlayer2(0.8,0.1,true));
+  }
+  
+  /**
+   * Builds a driver in which the human plays against the given player
+   *
+   * @param opponent The computer player
+   */
+  public TextDriver(Player opponent) {
     this.player = new TextHumanPlayer();
     this.tokenizer = new StreamTokenizer(System.in);
-    this.backgammon = new Backgammon(player, new BackPropPlayer2(0.8,0.1,true));
+    this.backgammon = new Backgammon(player, opponent);
     this.tokenizer.resetSyntax();
     this.tokenizer.wordChars('0', 'z');
     this.tokenizer.whitespaceChars('\0', ' ');
@@ -51,8 +60,23 @@ public class TextDriver {
     game.start();
   }
   
-  public static void main(String[] args) throws IOException {
-    TextDriver driver = new TextDriver();
+  /**
+   * Usage: java driver.TextDriver [plies] [threads]
+   *
+   * With no arguments the human plays the learning BackPropPlayer2;
+   * given plies, an ExpectimaxPlayer searching SavedNN that deep on
+   * threads threads (by default, one per processor).
+   */
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    TextDriver driver;
+    
+    if (args.length > 0) {
+      int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+      
+      driver = new TextDriver(ExpectimaxPlayer.readFrom("SavedNN", Integer.parseInt(args[0]), threads));
+    } else {
+      driver = new TextDriver();
+    }
     
     driver.go();
   }
@@ -21,6 +21,9 @@ public class Backgammon {
   // the dice 
   protected Dice dice;
   
+  // where the dice rolls come from
+  protected DiceSource source;
+  
   // the color of the current player
   protected int player;
   
@@ -35,9 +38,22 @@ public class Backgammon {
    * @param player2 The second player (WHITE)
    */
   public Backgammon(Player player1, Player player2) {
+    this(player1, player2, Dice.SHARED);
+  }
+  
+  /**
+   * Builds a new backgammon instance, given the two players
+   * to play the game between and the source of its dice rolls.
+   *
+   * @param player1 The first player (BLACK)
+   * @param player2 The second player (WHITE)
+   * @param source The source of the dice rolls
+   */
+  public Backgammon(Player player1, Player player2, DiceSource source) {
     this.players = new Player[2];
     this.players[0] = player1;
     this.players[1] = player2;
+    this.source = source;
     
     reset();
   }
@@ -92,7 +108,7 @@ public class Backgammon {
    */
   public void reset() {
     this.board = new Board();
-    this.dice = Dice.roll();
+    this.dice = source.roll();
     this.player = Board.BLACK;
   }
   
@@ -119,6 +135,15 @@ public class Backgammon {
     return MovementFactory.getAllMoves(player, dice, board);
   }
   
+  /**
+   * Sets the source of the dice rolls, from the next roll on
+   *
+   * @param source The source of the dice rolls
+   */
+  public void setDiceSource(DiceSource source) {
+    this.source = source;
+  }
+  
   /**
    * Returns the current dice
    *
@@ -155,7 +180,7 @@ public class Backgammon {
    */
   private void doMove(Move move) throws IllegalMoveException {
     board = move.getCurrentBoard();
-    dice = Dice.roll();
+    dice = source.roll();
     player = board.getOtherPlayer(player);
   }   
   
@@ -83,13 +83,41 @@ public class BarMovement extends Movement {
    * @return Wether or not a move is possible
    */
   public static boolean movePossible(int die, int player, Board board) {
-    try {
-      int destination = board.getBase(board.getOtherPlayer(player)) + (board.getDirection(player) * die);
-      new BarMovement(player, destination).apply(board.getScratch());
-      return true;
-    } catch (IllegalMoveException e) {}
+    int destination = board.getBase(board.getOtherPlayer(player)) + (board.getDirection(player) * die);
     
-    return false;
+    return isLegal(player, destination, board);
+  }
+  
+  /**
+   * Returns whether or not this movement can be applied to the
+   * provided board situation.
+   *
+   * @param board The current setup
+   * @return Whether or not the movement is legal
+   */
+  public boolean isLegal(Board board) {
+    return isLegal(player, end, board);
+  }
+  
+  /**
+   * Returns whether or not entering from the bar to end by the given
+   * player is legal on the given board, performing the same checks
+   * as the constructor and apply() without building a movement,
+   * copying the board or throwing.
+   *
+   * @param player The player making the movement
+   * @param end The end location
+   * @param board The current setup
+   * @return Whether or not the movement is legal
+   */
+  public static boolean isLegal(int player, int end, Board board) {
+    if ((! Board.onBoard(end)) || (board.getBar(player) == 0))
+      return false;
+    
+    if (! Board.inHomeQuadrant(end, Board.getOtherPlayer(player)))
+      return false;
+    
+    return (board.getPieces(Board.getOtherPlayer(player), end) <= 1);
   }
   
   /**
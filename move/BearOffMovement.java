@@ -44,17 +44,14 @@ public class BearOffMovement extends Movement {
    * @return Wether or not a move is possible
    */
   public static boolean movePossible(int die, int player, Board board) {
+    if (! canBearOff(player, board))
+      return false;
+    
     int direction = board.getDirection(player);
     
-    for (int i=board.getBase(player)-direction; board.inHomeQuadrant(i, player); i-=direction) {
-      BearOffMovement movement = new BearOffMovement(player, i);
-      
-      if (movement.canUse(board, die))
-        try {
-          movement.apply(board.getScratch());
-          return true;
-        } catch (IllegalMoveException e) {}
-    }
+    for (int i=board.getBase(player)-direction; board.inHomeQuadrant(i, player); i-=direction)
+      if ((board.getPieces(player, i) > 0) && canUse(player, i, board, die))
+        return true;
     
     return false;
   }
@@ -67,6 +64,20 @@ public class BearOffMovement extends Movement {
    * @return Wether or not that roll can make this move
    */
   public boolean canUse(Board board, int die) {
+    return canUse(player, start, board, die);
+  }
+  
+  /**
+   * Returns whether or not bearing off from start can use the
+   * given dice roll
+   *
+   * @param player The player making the movement
+   * @param start The start location
+   * @param board The current setup
+   * @param die The dice roll
+   * @return Wether or not that roll can make this move
+   */
+  public static boolean canUse(int player, int start, Board board, int die) {
     int direction = board.getDirection(player);
     
     for (int i=start-direction; board.inHomeQuadrant(i, player); i-=direction)
@@ -76,6 +87,54 @@ public class BearOffMovement extends Movement {
     return (die >= Math.abs(start - Board.getBase(player)));
   }
   
+  /**
+   * Returns whether or not this movement can be applied to the
+   * provided board situation.
+   *
+   * @param board The current setup
+   * @return Whether or not the movement is legal
+   */
+  public boolean isLegal(Board board) {
+    return isLegal(player, start, board);
+  }
+  
+  /**
+   * Returns whether or not bearing off from start by the given
+   * player is legal on the given board, performing the same checks
+   * as the constructor and apply() without building a movement,
+   * copying the board or throwing.
+   *
+   * @param player The player making the movement
+   * @param start The start location
+   * @param board The current setup
+   * @return Whether or not the movement is legal
+   */
+  public static boolean isLegal(int player, int start, Board board) {
+    if ((! Board.onBoard(start)) || (board.getPieces(player, start) == 0))
+      return false;
+    
+    return canBearOff(player, board);
+  }
+  
+  /**
+   * Returns whether or not the given player may bear off, that is,
+   * whether all of its pieces are in its home quadrant.
+   *
+   * @param player The player
+   * @param board The current setup
+   * @return Whether or not the player may bear off
+   */
+  public static boolean canBearOff(int player, Board board) {
+    if (board.getBar(player) > 0)
+      return false;
+    
+    for (int i=0; i<Board.NUM_SPIKES; i++)
+      if ((board.getPieces(player, i) > 0) && (! Board.inHomeQuadrant(i, player)))
+        return false;
+    
+    return true;
+  }
+  
   /**
    * Validates this movement given the provided
    * board situation.
@@ -97,6 +97,27 @@ public class Move {
     return false;
   }
   
+  /**
+   * Returns whether or not the movement can be added to this move,
+   * that is, whether addMovement() would succeed.  This neither
+   * changes the move nor throws.
+   *
+   * @param movement The movement to check
+   * @return Whether or not the movement can be added
+   */
+  public boolean canAddMovement(Movement movement) {
+    if (isFull())
+      return false;
+    
+    Board current = getCurrentBoard();
+    
+    for (int i=0; i<used.length; i++) 
+      if ((used[i] != USED) && (movement.canUse(current, used[i]))) 
+        return movement.isLegal(current);
+    
+    return false;
+  }
+  
   /**
    * Adds a movement to this move.
    *
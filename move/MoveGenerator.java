@@ -0,0 +1,447 @@
+package move;
+
+import java.util.*;
+
+import board.*;
+
+/**
+ * Enumerates the distinct positions which can result from a dice roll,
+ * producing the same set of positions as MovementFactory.getAllMoves
+ * but without building a Move per partial move.  Movements are applied
+ * to a preallocated board per depth, positions are deduplicated as they
+ * are found (by Zobrist key, then equals), and partial moves reaching a
+ * position already seen with the same dice left are not expanded again.
+ *
+ * The boards returned by getBoard are owned by the generator and are
+ * overwritten by the next call to generate; use getMove to get a Move
+ * (with its own boards) for a chosen position.  A generator is not
+ * thread safe, but is cheap to keep one per thread.
+ */
+public class MoveGenerator {
+  
+  // the path location for the bar (as a start) or off the board (as an end)
+  public static final int OUTSIDE = -1;
+  
+  // the most movements in one move
+  protected static final int MAX_MOVEMENTS = Dice.NUM_DICE * 2;
+  
+  // random keys for the dice left, mixed into the board key to find
+  // partial moves which have already been expanded
+  protected static final long[] DICE_KEYS = new long[1 << MAX_MOVEMENTS];
+  
+  static {
+    Random random = new Random(0xd1ce);
+    
+    for (int i=0; i<DICE_KEYS.length; i++)
+      DICE_KEYS[i] = random.nextLong();
+  }
+  
+  // the roll, board and player being generated
+  protected Dice dice;
+  protected Board board;
+  protected int player;
+  
+  // the dice left to use, as in Move.used
+  protected int[] used = new int[MAX_MOVEMENTS];
+  protected int numDice;
+  
+  // the board after each movement of the current partial move
+  protected Board[] scratch = new Board[MAX_MOVEMENTS + 1];
+  
+  // the start and end of each movement of the current partial move
+  protected int[] pathStart = new int[MAX_MOVEMENTS];
+  protected int[] pathEnd = new int[MAX_MOVEMENTS];
+  
+  // the resulting positions, and the movements leading to each
+  protected Board[] results = new Board[0];
+  protected int[] resultStart = new int[0];
+  protected int[] resultEnd = new int[0];
+  protected int[] resultLength = new int[0];
+  protected int size;
+  
+  // open-addressed table of result indices, by board key
+  protected long[] resultKeys = new long[256];
+  protected int[] resultSlots = new int[256];
+  protected int[] resultStamps = new int[256];
+  
+  // open-addressed table of expanded (board, dice left) keys
+  protected long[] visitedKeys = new long[1024];
+  protected int[] visitedStamps = new int[1024];
+  protected int visitedSize;
+  
+  // the current generation, so that the tables need no clearing
+  protected int stamp;
+  
+  /**
+   * Builds a new generator
+   */
+  public MoveGenerator() {
+    for (int i=0; i<scratch.length; i++)
+      scratch[i] = new Board();
+    
+    ensureCapacity(64);
+  }
+  
+  /**
+   * Generates all of the distinct positions the given player can
+   * reach from the given board with the given dice roll.
+   *
+   * @param player The player who is active
+   * @param dice The dice roll
+   * @param board The current board
+   * @return The number of distinct positions
+   */
+  public int generate(int player, Dice dice, Board board) {
+    this.player = player;
+    this.dice = dice;
+    this.board = board;
+    this.size = 0;
+    this.visitedSize = 0;
+    
+    if (++stamp == 0) {
+      Arrays.fill(resultStamps, 0);
+      Arrays.fill(visitedStamps, 0);
+      stamp = 1;
+    }
+    
+    if (dice.isDoubles()) {
+      numDice = Dice.NUM_DICE * 2;
+      Arrays.fill(used, dice.getDie1());
+    } else {
+      numDice = Dice.NUM_DICE;
+      used[0] = dice.getDie1();
+      used[1] = dice.getDie2();
+    }
+    
+    scratch[0].copyFrom(board);
+    generate(0);
+    
+    return size;
+  }
+  
+  /**
+   * Returns the number of positions found by the last generate
+   *
+   * @return The number of distinct positions
+   */
+  public int size() {
+    return size;
+  }
+  
+  /**
+   * Returns one of the positions found by the last generate.  The
+   * board belongs to the generator, *NO CHANGES SHOULD BE MADE TO
+   * THIS OBJECT* and it is only valid until the next generate.
+   *
+   * @param index The index of the position
+   * @return The position
+   */
+  public Board getBoard(int index) {
+    return results[index];
+  }
+  
+  /**
+   * Builds the Move which leads to one of the positions found by the
+   * last generate.
+   *
+   * @param index The index of the position
+   * @return The move
+   */
+  public Move getMove(int index) {
+    Move move = new Move(dice, board, player);
+    
+    for (int i=0; i<resultLength[index]; i++) {
+      int start = resultStart[index * MAX_MOVEMENTS + i];
+      int end = resultEnd[index * MAX_MOVEMENTS + i];
+      
+      if (start == OUTSIDE)
+        move.addMovement(new BarMovement(player, end));
+      else if (end == OUTSIDE)
+        move.addMovement(new BearOffMovement(player, start));
+      else
+        move.addMovement(new NormalMovement(player, start, end));
+    }
+    
+    return move;
+  }
+  
+  /**
+   * Expands the partial move with depth movements, whose board is
+   * scratch[depth].  Follows the same order and rules as
+   * MovementFactory.generateMoves.
+   *
+   * @param depth The number of movements made so far
+   */
+  protected void generate(int depth) {
+    Board current = scratch[depth];
+    
+    // if this is a full move, or no more moves are possible, it is a result
+    if ((depth == numDice) || (! movePossible(current))) {
+      addResult(current, depth);
+      return;
+    }
+    
+    // the same position with the same dice left has the same results
+    if ((depth > 0) && (! visit(current.getKey() ^ DICE_KEYS[getDiceLeft()])))
+      return;
+    
+    int direction = Board.getDirection(player);
+    
+    // otherwise, first try to do any off-bar moves
+    if (current.getBar(player) > 0) {
+      for (int i=0; i<numDice; i++) 
+        if (used[i] != Move.USED) {
+          int end = Board.getBase(Board.getOtherPlayer(player)) + (used[i] * direction);
+          
+          if (BarMovement.isLegal(player, end, current))
+            step(depth, i, OUTSIDE, end);
+        }
+    } else {
+      // now try for any normal moves
+      for (int start=Board.getBase(Board.getOtherPlayer(player))+direction; Board.onBoard(start); start+=direction) {
+        if (current.getPieces(player, start) > 0) {
+          if (! dice.isDoubles()) {
+            for (int i=0; i<numDice; i++) 
+              if (used[i] != Move.USED) {
+                int end = start + direction * used[i];
+                
+                if (NormalMovement.isLegal(player, start, end, current))
+                  step(depth, i, start, end);
+              }
+          } else {
+            int end = start + direction * dice.getDie1();
+            
+            if (NormalMovement.isLegal(player, start, end, current))
+              step(depth, getUnused(), start, end);
+          }
+        }
+      }
+      
+      // and lastly try any bear-off moves, using the first die which can
+      // (as Move.addMovement does)
+      if (BearOffMovement.canBearOff(player, current))
+        for (int start=Board.getBase(player)-direction; Board.inHomeQuadrant(start, player); start-=direction)
+          if (current.getPieces(player, start) > 0)
+            for (int i=0; i<numDice; i++)
+              if ((used[i] != Move.USED) && BearOffMovement.canUse(player, start, current, used[i])) {
+                step(depth, i, start, OUTSIDE);
+                break;
+              }
+    }
+  }
+  
+  /**
+   * Applies a legal movement to a copy of scratch[depth] and expands
+   * the result.
+   *
+   * @param depth The number of movements made so far
+   * @param die The index of the die used
+   * @param start The start location, or OUTSIDE for the bar
+   * @param end The end location, or OUTSIDE for bearing off
+   */
+  protected void step(int depth, int die, int start, int end) {
+    Board next = scratch[depth + 1];
+    int other = Board.getOtherPlayer(player);
+    
+    next.copyFrom(scratch[depth]);
+    
+    if (end == OUTSIDE) {
+      next.removeFromLocation(player, start);
+      next.moveOff(player);
+    } else {
+      // first bump any piece at the end
+      if (next.getPieces(other, end) == 1) {
+        next.removeFromLocation(other, end);
+        next.moveToBar(other);
+      }
+      
+      if (start == OUTSIDE)
+        next.removeFromBar(player);
+      else
+        next.removeFromLocation(player, start);
+      
+      next.moveToLocation(player, end);
+    }
+    
+    pathStart[depth] = start;
+    pathEnd[depth] = end;
+    
+    int value = used[die];
+    used[die] = Move.USED;
+    generate(depth + 1);
+    used[die] = value;
+  }
+  
+  /**
+   * Returns whether or not any of the dice left can be used
+   *
+   * @param current The board
+   * @return Whether or not a movement is possible
+   */
+  protected boolean movePossible(Board current) {
+    for (int i=0; i<numDice; i++) 
+      if ((used[i] != Move.USED) && MovementFactory.movePossible(used[i], player, current))
+        return true;
+    
+    return false;
+  }
+  
+  /**
+   * Returns the index of the first die left
+   *
+   * @return The index of a die which has not been used
+   */
+  protected int getUnused() {
+    for (int i=0; i<numDice; i++)
+      if (used[i] != Move.USED)
+        return i;
+    
+    return Move.USED;
+  }
+  
+  /**
+   * Returns which dice are left: the number left for doubles, or a
+   * bit per die otherwise
+   *
+   * @return The dice left
+   */
+  protected int getDiceLeft() {
+    int result = 0;
+    
+    for (int i=0; i<numDice; i++)
+      if (used[i] != Move.USED)
+        result += (dice.isDoubles() ? 1 : (1 << i));
+    
+    return result;
+  }
+  
+  /**
+   * Records a partial move as expanded
+   *
+   * @param key The key of the board and dice left
+   * @return Whether or not it had not been expanded before
+   */
+  protected boolean visit(long key) {
+    if (2 * (visitedSize + 1) > visitedKeys.length)
+      growVisited();
+    
+    int mask = visitedKeys.length - 1;
+    
+    for (int slot=mix(key) & mask; ; slot=(slot + 1) & mask) {
+      if (visitedStamps[slot] != stamp) {
+        visitedStamps[slot] = stamp;
+        visitedKeys[slot] = key;
+        visitedSize++;
+        return true;
+      }
+      
+      if (visitedKeys[slot] == key)
+        return false;
+    }
+  }
+  
+  /**
+   * Adds a position to the results, unless it is already there
+   *
+   * @param current The position
+   * @param depth The number of movements leading to it
+   */
+  protected void addResult(Board current, int depth) {
+    if (2 * (size + 1) > resultKeys.length)
+      growResults();
+    
+    int mask = resultKeys.length - 1;
+    long key = current.getKey();
+    int slot = mix(key) & mask;
+    
+    for (; resultStamps[slot] == stamp; slot=(slot + 1) & mask)
+      if ((resultKeys[slot] == key) && results[resultSlots[slot]].equals(current))
+        return;
+    
+    ensureCapacity(size + 1);
+    
+    resultStamps[slot] = stamp;
+    resultKeys[slot] = key;
+    resultSlots[slot] = size;
+    
+    results[size].copyFrom(current);
+    System.arraycopy(pathStart, 0, resultStart, size * MAX_MOVEMENTS, depth);
+    System.arraycopy(pathEnd, 0, resultEnd, size * MAX_MOVEMENTS, depth);
+    resultLength[size] = depth;
+    size++;
+  }
+  
+  /**
+   * Makes room for at least the given number of results
+   *
+   * @param capacity The number of results
+   */
+  protected void ensureCapacity(int capacity) {
+    if (capacity <= results.length)
+      return;
+    
+    int length = Math.max(capacity, results.length * 2);
+    int old = results.length;
+    
+    results = Arrays.copyOf(results, length);
+    resultStart = Arrays.copyOf(resultStart, length * MAX_MOVEMENTS);
+    resultEnd = Arrays.copyOf(resultEnd, length * MAX_MOVEMENTS);
+    resultLength = Arrays.copyOf(resultLength, length);
+    
+    for (int i=old; i<length; i++)
+      results[i] = new Board();
+  }
+  
+  /**
+   * Doubles the size of the result table, reinserting the results
+   */
+  protected void growResults() {
+    resultKeys = new long[resultKeys.length * 2];
+    resultSlots = new int[resultSlots.length * 2];
+    resultStamps = new int[resultStamps.length * 2];
+    
+    int mask = resultKeys.length - 1;
+    
+    for (int i=0; i<size; i++) {
+      long key = results[i].getKey();
+      int slot = mix(key) & mask;
+      
+      while (resultStamps[slot] == stamp)
+        slot = (slot + 1) & mask;
+      
+      resultStamps[slot] = stamp;
+      resultKeys[slot] = key;
+      resultSlots[slot] = i;
+    }
+  }
+  
+  /**
+   * Doubles the size of the expanded table, reinserting its keys
+   */
+  protected void growVisited() {
+    long[] keys = visitedKeys;
+    int[] stamps = visitedStamps;
+    
+    visitedKeys = new long[keys.length * 2];
+    visitedStamps = new int[stamps.length * 2];
+    visitedSize = 0;
+    
+    for (int i=0; i<keys.length; i++)
+      if (stamps[i] == stamp)
+        visit(keys[i]);
+  }
+  
+  /**
+   * Spreads the bits of a key over the low bits used as a table index
+   *
+   * @param key The key
+   * @return The mixed key
+   */
+  protected static int mix(long key) {
+    key ^= (key >>> 33);
+    key *= 0xff51afd7ed558ccdL;
+    key ^= (key >>> 33);
+    
+    return (int) key;
+  }
+}
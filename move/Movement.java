@@ -33,6 +33,16 @@ public abstract class Movement {
    */
   public abstract void apply(Board board) throws IllegalMoveException;
   
+  /**
+   * Returns whether or not this movement can be applied to the
+   * provided board situation, that is, whether apply() would succeed.
+   * Unlike apply(), this neither changes the board nor throws.
+   *
+   * @param board The current setup
+   * @return Whether or not the movement is legal
+   */
+  public abstract boolean isLegal(Board board);
+  
   /**
    * Returns whether or not this movement can use the given
    * dice roll to perfrom it's movement
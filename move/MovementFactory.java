@@ -41,8 +41,8 @@ public class MovementFactory {
     return (Move[]) result.toArray(new Move[0]);
   }
   
-  protected static Collection generateMoves(Move base) {
-    Collection result = new LinkedHashSet();
+  protected static Collection<Move> generateMoves(Move base) {
+    Collection<Move> result = new LinkedHashSet<Move>();
     
     // if this is a full move, or no more moves are possible,
     // return just this move
@@ -59,12 +59,10 @@ public class MovementFactory {
     if (board.getBar(base.player) > 0) {
       for (int i=0; i<base.used.length; i++) 
         if (base.used[i] != base.USED) { 
-          try {
-            Move bar = new Move(base);
-            int destination = board.getBase(board.getOtherPlayer(player)) + (bar.used[i]*board.getDirection(player));
-            bar.addMovement(new BarMovement(player, destination));
-            result.addAll(generateMoves(bar));
-          } catch (IllegalMoveException e) {}
+          int destination = board.getBase(board.getOtherPlayer(player)) + (base.used[i]*board.getDirection(player));
+          
+          if (BarMovement.isLegal(player, destination, board))
+            addMovement(base, new BarMovement(player, destination), result);
         }
     } else {
       // now try for any normal moves
@@ -73,36 +71,45 @@ public class MovementFactory {
           if (base.used.length == 2) {
             for (int j=0; j<base.used.length; j++) 
               if (base.used[j] != base.USED) { 
-                try {
-                  Move normal = new Move(base);
-                  int destination = i + board.getDirection(player) * base.used[j];
-                  normal.addMovement(new NormalMovement(player, i, destination));
-                  result.addAll(generateMoves(normal));
-                } catch (IllegalMoveException e) {}
+                int destination = i + board.getDirection(player) * base.used[j];
+                
+                if (NormalMovement.isLegal(player, i, destination, board))
+                  addMovement(base, new NormalMovement(player, i, destination), result);
               }
           } else {
-            try {
-              Move normal = new Move(base);
-              int destination = i + board.getDirection(player) * base.dice.getDie1();
-              normal.addMovement(new NormalMovement(player, i, destination));
-              result.addAll(generateMoves(normal));
-            } catch (IllegalMoveException e) {}
+            int destination = i + board.getDirection(player) * base.dice.getDie1();
+            
+            if (NormalMovement.isLegal(player, i, destination, board))
+              addMovement(base, new NormalMovement(player, i, destination), result);
           }
         }
       }
         
       // and lastly try any bear-off moves
-      for (int i=board.getBase(player)-board.getDirection(player); board.inHomeQuadrant(i, player); i-=board.getDirection(player)) 
-        if (board.getPieces(player, i) > 0) {
-          try {
-            Move bearoff = new Move(base);
-            bearoff.addMovement(new BearOffMovement(player, i));
-            result.addAll(generateMoves(bearoff));
-          } catch (IllegalMoveException e) {}
-        }
+      if (BearOffMovement.canBearOff(player, board))
+        for (int i=board.getBase(player)-board.getDirection(player); board.inHomeQuadrant(i, player); i-=board.getDirection(player)) 
+          if (board.getPieces(player, i) > 0)
+            addMovement(base, new BearOffMovement(player, i), result);
     }
         
     return result;
   }
   
+  /**
+   * Adds the moves generated from base followed by the given movement
+   * to the result, if the movement can be added to base.  Legality is
+   * checked up front rather than by catching IllegalMoveException.
+   *
+   * @param base The move so far
+   * @param movement The next movement
+   * @param result The moves found so far
+   */
+  protected static void addMovement(Move base, Movement movement, Collection<Move> result) {
+    if (base.canAddMovement(movement)) {
+      Move move = new Move(base);
+      move.addMovement(movement);
+      result.addAll(generateMoves(move));
+    }
+  }
+  
 }
\ No newline at end of file
@@ -94,6 +94,46 @@ public class NormalMovement extends Movement {
     board.moveToLocation(player, end);
   }
   
+  /**
+   * Returns whether or not this movement can be applied to the
+   * provided board situation.
+   *
+   * @param board The current setup
+   * @return Whether or not the movement is legal
+   */
+  public boolean isLegal(Board board) {
+    return isLegal(player, start, end, board);
+  }
+  
+  /**
+   * Returns whether or not a normal movement from start to end by
+   * the given player is legal on the given board, performing the same
+   * checks as the constructor and apply() without building a movement,
+   * copying the board or throwing.
+   *
+   * @param player The player making the movement
+   * @param start The start location
+   * @param end The end location
+   * @param board The current setup
+   * @return Whether or not the movement is legal
+   */
+  public static boolean isLegal(int player, int start, int end, Board board) {
+    if ((! Board.onBoard(start)) || (! Board.onBoard(end)))
+      return false;
+    
+    if ((start == end) || (Math.abs(start - end) > Dice.MAX_VALUE))
+      return false;
+    
+    if ((board.getBar(player) > 0) || (board.getPieces(player, start) == 0))
+      return false;
+    
+    // no moving backwards
+    if ((end - start) * Board.getDirection(player) < 0)
+      return false;
+    
+    return (board.getPieces(Board.getOtherPlayer(player), end) <= 1);
+  }
+  
   /**
    * Return whether or not a move is possible using 
    * the given dice roll by the given player in the given board.
@@ -106,14 +146,15 @@ public class NormalMovement extends Movement {
    * @return Wether or not a move is possible
    */
   public static boolean movePossible(int die, int player, Board board) {
+    if (board.getBar(player) > 0)
+      return false;
+    
     int direction = board.getDirection(player);
     int start = board.getBase(board.getOtherPlayer(player))+direction; 
 
     for (int i=start; board.onBoard(i+(die*direction)); i+=direction) 
-      try {
-        new NormalMovement(player, i, i+(die*direction)).apply(board.getScratch());
+      if (isLegal(player, i, i+(die*direction), board))
         return true;
-      } catch (IllegalMoveException e) {}
     
     return false;
   }
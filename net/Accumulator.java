@@ -0,0 +1,118 @@
+package net;
+
+/**
+ * Evaluates positions which differ only slightly from a common root
+ * position, such as all of the candidate moves of one roll.  The
+ * first hidden layer sums of the root are computed once by setRoot,
+ * and each subsequent getValue only adds the weight rows of the input
+ * units which differ from the root, so a candidate which changes a
+ * handful of spikes costs a few hundred multiply-adds instead of a
+ * full pass over the first layer.
+ *
+ * The root must be set again after the weights of the network change.
+ */
+public class Accumulator {
+
+  // the network being evaluated
+  protected FlatNetwork net;
+
+  // the root input
+  protected double[] root;
+
+  // the first hidden layer sums (before the sigmoid) of the root
+  protected double[] sums;
+
+  /**
+   * Builds an accumulator for the given network
+   *
+   * @param net The network to evaluate
+   */
+  public Accumulator(FlatNetwork net) {
+    this.net = net;
+    this.root = new double[net.getInputs()];
+    this.sums = new double[net.getSize(1)];
+  }
+
+  /**
+   * Returns the network this accumulator evaluates
+   *
+   * @return The network
+   */
+  public FlatNetwork getNetwork() {
+    return net;
+  }
+
+  /**
+   * Sets the root position, computing its first hidden layer sums
+   * with a full pass.
+   *
+   * @param input The root input
+   * @return The network value of the root
+   */
+  public double[] setRoot(double[] input) {
+    double[] w = net.weights[0];
+    int n = sums.length;
+
+    System.arraycopy(input, 0, root, 0, root.length);
+
+    for (int j=0; j<n; j++)
+      sums[j] = 0;
+
+    for (int i=0; i<root.length; i++) {
+      double x = root[i];
+      int row = i * n;
+
+      if (x != 0)
+        for (int j=0; j<n; j++)
+          sums[j] += w[row + j] * x;
+    }
+
+    System.arraycopy(sums, 0, net.activations[0], 0, n);
+
+    return net.forwardFromSums().clone();
+  }
+
+  /**
+   * Calculates the network value of the given input by updating the
+   * root sums with the inputs which differ from the root.  Leaves the
+   * value of every unit in the network's activations, as getValue does.
+   *
+   * @param input The input to check
+   * @return The network value from this input
+   */
+  public double[] getValue(double[] input) {
+    return getValue(input, new double[net.getOutputs()]);
+  }
+
+  /**
+   * Calculates the network value of the given input as getValue does,
+   * writing it into the provided array rather than allocating one.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(double[] input, double[] result) {
+    double[] w = net.weights[0];
+    double[] out = net.activations[0];
+    int n = sums.length;
+
+    System.arraycopy(sums, 0, out, 0, n);
+
+    for (int i=0; i<root.length; i++) {
+      double delta = input[i] - root[i];
+
+      if (delta != 0) {
+        int row = i * n;
+
+        for (int j=0; j<n; j++)
+          out[j] += w[row + j] * delta;
+      }
+    }
+
+    double[] output = net.forwardFromSums();
+    System.arraycopy(output, 0, result, 0, result.length);
+
+    return result;
+  }
+}
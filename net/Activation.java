@@ -0,0 +1,98 @@
+package net;
+
+/**
+ * The sigmoid the networks apply to every hidden and output unit.
+ * DEFAULT is the exact sigmoid, unless the system property
+ * tdgammon.activation names another implementation:
+ *
+ * exact       1 / (1 + Math.exp(-x)), as HiddenUnit computes it
+ * table       a cubic interpolated lookup table, within 1e-9
+ * polynomial  exp as a power of two times a polynomial, within 1e-8
+ *
+ * All of them approximate the same function, so training takes its
+ * derivative from the unit's value, as value * (1 - value), whichever
+ * is used.
+ */
+public abstract class Activation {
+
+  // the activation networks use unless told otherwise
+  public static final Activation DEFAULT = forName(System.getProperty("tdgammon.activation", "exact"));
+
+  /**
+   * Returns the sigmoid of x
+   *
+   * @param x The value to apply the function to
+   * @return The result
+   */
+  public abstract double apply(double x);
+
+  /**
+   * Replaces each of values[from] to values[to - 1] by its sigmoid
+   *
+   * @param values The values
+   * @param from The first value
+   * @param to One past the last value
+   */
+  public abstract void apply(double[] values, int from, int to);
+
+  /**
+   * Replaces each of values[from] to values[to - 1] by its sigmoid
+   *
+   * @param values The values
+   * @param from The first value
+   * @param to One past the last value
+   */
+  public abstract void apply(float[] values, int from, int to);
+
+  /**
+   * Returns a bound on the difference between apply and the exact
+   * sigmoid, over all inputs
+   *
+   * @return The bound
+   */
+  public abstract double getMaxError();
+
+  /**
+   * Returns the name this activation is selected by
+   *
+   * @return The name
+   */
+  public abstract String getName();
+
+  /**
+   * Returns the derivative of the sigmoid, given its value
+   *
+   * @param value The value of the sigmoid
+   * @return The derivative at that point
+   */
+  public double gradient(double value) {
+    return value * (1.0 - value);
+  }
+
+  /**
+   * Returns the derivative of the sigmoid, given its value, in float
+   *
+   * @param value The value of the sigmoid
+   * @return The derivative at that point
+   */
+  public float gradient(float value) {
+    return value * (1.0f - value);
+  }
+
+  /**
+   * Returns the activation with the given name
+   *
+   * @param name exact, table or polynomial
+   * @return The activation
+   */
+  public static Activation forName(String name) {
+    if ("exact".equals(name))
+      return new ExactActivation();
+    if ("table".equals(name))
+      return new TableActivation();
+    if ("polynomial".equals(name))
+      return new PolynomialActivation();
+
+    throw new IllegalArgumentException("Unknown activation " + name + ", expected exact, table or polynomial");
+  }
+}
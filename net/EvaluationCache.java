@@ -0,0 +1,277 @@
+package net;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A bounded cache of network outputs, keyed by a position's 64-bit
+ * (Zobrist) key and the perspective it was evaluated from, which any
+ * number of threads may use at once.
+ *
+ * The table is split into buckets of WAYS entries, a key only living
+ * in the bucket its hash selects.  When a bucket is full, its entries
+ * are evicted in CLOCK order: a hit marks an entry as referenced, and
+ * the bucket's hand passes over (and unmarks) referenced entries until
+ * it finds one which is not.  Entries are immutable and published
+ * through an AtomicReferenceArray, so a reader never sees one half
+ * written; two threads storing into the same bucket at once may lose
+ * one of the two entries, which only costs a later miss.
+ *
+ * Entries remember the version of the weights they were computed with.
+ * Whoever changes the weights calls advance(), and an entry only hits
+ * while it is at most getTolerance() versions old, 0 (the default)
+ * meaning exactly the current weights.  Keys are trusted: two positions
+ * with the same 64-bit key, about one chance in 2^64 per pair, would
+ * share an entry.
+ */
+public class EvaluationCache {
+
+  // the number of entries of each bucket
+  public static final int WAYS = 4;
+
+  // an immutable cached evaluation
+  protected static class Entry {
+
+    // the position key and perspective
+    protected final long key;
+    protected final int perspective;
+
+    // the version of the weights the value was computed with
+    protected final long version;
+
+    // the network output
+    protected final double[] value;
+
+    // whether the entry was hit since the CLOCK hand last passed it
+    protected volatile boolean referenced;
+
+    protected Entry(long key, int perspective, long version, double[] value) {
+      this.key = key;
+      this.perspective = perspective;
+      this.version = version;
+      this.value = value;
+    }
+  }
+
+  // the entries, WAYS consecutive ones per bucket
+  protected AtomicReferenceArray<Entry> entries;
+
+  // the CLOCK hand of each bucket (races between threads are harmless)
+  protected byte[] hands;
+
+  // buckets - 1, the buckets being a power of two
+  protected int mask;
+
+  // the version of the weights, and how many versions an entry may be behind
+  protected AtomicLong version = new AtomicLong();
+  protected volatile long tolerance;
+
+  // the statistics
+  protected LongAdder hits = new LongAdder();
+  protected LongAdder misses = new LongAdder();
+  protected LongAdder stale = new LongAdder();
+  protected LongAdder evictions = new LongAdder();
+
+  /**
+   * Builds a cache holding at least the given number of entries
+   *
+   * @param capacity The number of entries, rounded up to a power of two
+   */
+  public EvaluationCache(int capacity) {
+    int buckets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS - 1)) << 1;
+
+    this.entries = new AtomicReferenceArray<Entry>(buckets * WAYS);
+    this.hands = new byte[buckets];
+    this.mask = buckets - 1;
+  }
+
+  /**
+   * Returns the number of entries this cache holds
+   *
+   * @return The capacity
+   */
+  public int getCapacity() {
+    return entries.length();
+  }
+
+  /**
+   * Returns the first entry of the bucket of the given key
+   *
+   * @param key The position key
+   * @param perspective The perspective
+   * @return The index of the bucket's first entry
+   */
+  protected int getBucket(long key, int perspective) {
+    long hash = (key ^ (perspective * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+
+    return ((int) (hash >>> 32) & mask) * WAYS;
+  }
+
+  /**
+   * Copies the cached output of the given position into result, if
+   * there is one recent enough.
+   *
+   * @param key The position key
+   * @param perspective The perspective it is evaluated from
+   * @param result The array to write the output into
+   * @return Whether it was found
+   */
+  public boolean get(long key, int perspective, double[] result) {
+    int bucket = getBucket(key, perspective);
+
+    for (int w=0; w<WAYS; w++) {
+      Entry entry = entries.get(bucket + w);
+
+      if (entry != null && entry.key == key && entry.perspective == perspective) {
+        if (version.get() - entry.version > tolerance) {
+          stale.increment();
+          return false;
+        }
+
+        if (! entry.referenced)
+          entry.referenced = true;
+
+        System.arraycopy(entry.value, 0, result, 0, result.length);
+        hits.increment();
+
+        return true;
+      }
+    }
+
+    misses.increment();
+
+    return false;
+  }
+
+  /**
+   * Stores the output of the given position, computed with the
+   * current weights.
+   *
+   * @param key The position key
+   * @param perspective The perspective it was evaluated from
+   * @param value The output, which is copied
+   */
+  public void put(long key, int perspective, double[] value) {
+    int bucket = getBucket(key, perspective);
+    int slot = -1;
+
+    for (int w=0; w<WAYS && slot < 0; w++) {
+      Entry entry = entries.get(bucket + w);
+
+      // an empty entry, or an older value of this position
+      if (entry == null || (entry.key == key && entry.perspective == perspective))
+        slot = bucket + w;
+    }
+
+    if (slot < 0) {
+      int b = bucket / WAYS;
+      int hand = hands[b];
+
+      // at most one full turn unmarking entries, and one more finds an unmarked one
+      for (int turn=0; turn<2*WAYS; turn++) {
+        Entry entry = entries.get(bucket + hand);
+
+        if (entry == null || ! entry.referenced)
+          break;
+
+        entry.referenced = false;
+        hand = (hand + 1) % WAYS;
+      }
+
+      slot = bucket + hand;
+      hands[b] = (byte) ((hand + 1) % WAYS);
+      evictions.increment();
+    }
+
+    entries.set(slot, new Entry(key, perspective, version.get(), value.clone()));
+  }
+
+  /**
+   * Records that the weights have changed, making every entry one
+   * version older.
+   */
+  public void advance() {
+    version.incrementAndGet();
+  }
+
+  /**
+   * Returns how many versions behind the weights an entry may be
+   * and still be used
+   *
+   * @return The tolerance
+   */
+  public long getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Sets how many versions behind the weights an entry may be and
+   * still be used: 0 only uses values of the current weights, while a
+   * larger tolerance trades some staleness for hits while training.
+   *
+   * @param tolerance The tolerance
+   */
+  public void setTolerance(long tolerance) {
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * Empties the cache, keeping its statistics.
+   */
+  public void clear() {
+    for (int i=0; i<entries.length(); i++)
+      entries.set(i, null);
+  }
+
+  /**
+   * Returns the number of lookups which found a recent enough value
+   *
+   * @return The hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of lookups which did not, including stale ones
+   *
+   * @return The misses
+   */
+  public long getMisses() {
+    return misses.sum() + stale.sum();
+  }
+
+  /**
+   * Returns the number of lookups which found a value too old to use
+   *
+   * @return The stale lookups
+   */
+  public long getStale() {
+    return stale.sum();
+  }
+
+  /**
+   * Returns the number of entries evicted to make room for others
+   *
+   * @return The evictions
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the fraction of lookups which hit
+   *
+   * @return The hit rate, 0 before any lookup
+   */
+  public double getHitRate() {
+    long hits = getHits();
+    long lookups = hits + getMisses();
+
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  public String toString() {
+    return String.format("%,d hits, %,d misses (%,d stale), %.1f%% hit rate, %,d evictions",
+                         getHits(), getMisses(), getStale(), 100 * getHitRate(), getEvictions());
+  }
+}
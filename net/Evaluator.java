@@ -0,0 +1,42 @@
+package net;
+
+/**
+ * Interface for anything which can evaluate the board encoding,
+ * whatever the representation of its weights.
+ */
+public interface Evaluator {
+
+  /**
+   * Returns the number of input units
+   *
+   * @return The number of input units
+   */
+  public int getInputs();
+
+  /**
+   * Returns the number of output units
+   *
+   * @return The number of output units
+   */
+  public int getOutputs();
+
+  /**
+   * Calculates the network value given the provided input, writing
+   * it into the provided array.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(double[] input, double[] result);
+
+  /**
+   * Calculates the network value given the non-zero units of
+   * the input, writing it into the provided array.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(SparseInput input, double[] result);
+}
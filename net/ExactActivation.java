@@ -0,0 +1,29 @@
+package net;
+
+/**
+ * The sigmoid exactly as HiddenUnit computes it.
+ */
+public class ExactActivation extends Activation {
+
+  public double apply(double x) {
+    return (1/( 1 + Math.exp(-x) ));
+  }
+
+  public void apply(double[] values, int from, int to) {
+    for (int i=from; i<to; i++)
+      values[i] = (1/( 1 + Math.exp(-values[i]) ));
+  }
+
+  public void apply(float[] values, int from, int to) {
+    for (int i=from; i<to; i++)
+      values[i] = (float) (1/( 1 + Math.exp(-values[i]) ));
+  }
+
+  public double getMaxError() {
+    return 0;
+  }
+
+  public String getName() {
+    return "exact";
+  }
+}
@@ -0,0 +1,392 @@
+package net;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A feed-forward network with the same topology and semantics as
+ * NeuralNetwork, but backed by contiguous primitive arrays rather than
+ * one object per unit.  The weights of each layer are stored in a single
+ * row-major array with one row per input unit, so that
+ *
+ * weights[l][i * getSize(l+1) + j]
+ *
+ * is the weight from unit i of layer l to unit j of layer l+1 (layer 0
+ * being the input).  The activations of the last evaluation are kept in
+ * activations[l], which holds the values of layer l+1.
+ */
+public class FlatNetwork implements Evaluator {
+
+  // the number of units in each layer, including the input layer
+  protected int[] sizes;
+
+  // the weights of each layer, one row per input unit
+  public double[][] weights;
+
+  // the unit values from the last evaluation (cached)
+  public double[][] activations;
+
+  // the sigmoid applied to every hidden and output unit
+  protected Activation activation = Activation.DEFAULT;
+
+  /**
+   * Builds a network with the given number of input units and
+   * hidden layers, with all weights set to 0 (as NeuralNetwork does).
+   *
+   * @param input The number of input units
+   * @param hidden The number of hidden units, as well as the number of layers
+   */
+  public FlatNetwork(int input, int[] hidden) {
+    this.sizes = new int[hidden.length + 1];
+    this.sizes[0] = input;
+    System.arraycopy(hidden, 0, this.sizes, 1, hidden.length);
+
+    this.weights = new double[hidden.length][];
+
+    for (int l=0; l<hidden.length; l++)
+      this.weights[l] = new double[sizes[l] * sizes[l+1]];
+
+    allocate();
+  }
+
+  /**
+   * Builds a network on the provided weights, which are shared
+   * rather than copied.
+   *
+   * @param sizes The number of units in each layer, including the input
+   * @param weights The weights of each layer
+   */
+  protected FlatNetwork(int[] sizes, double[][] weights) {
+    this.sizes = sizes;
+    this.weights = weights;
+
+    allocate();
+  }
+
+  /**
+   * Allocates the activation buffers for the current sizes.
+   */
+  private void allocate() {
+    this.activations = new double[weights.length][];
+
+    for (int l=0; l<weights.length; l++)
+      this.activations[l] = new double[sizes[l+1]];
+  }
+
+  /**
+   * Builds a flat copy of the provided network.
+   *
+   * @param net The network to copy the weights from
+   */
+  public FlatNetwork(NeuralNetwork net) {
+    this(net.input.length, getSizes(net));
+
+    for (int l=0; l<weights.length; l++) {
+      int n = sizes[l+1];
+
+      for (int j=0; j<n; j++) {
+        double[] w = net.hidden[l][j].weights;
+
+        for (int i=0; i<w.length; i++)
+          weights[l][i * n + j] = w[i];
+      }
+    }
+  }
+
+  /**
+   * Builds a copy of the provided network, with its own weights.
+   *
+   * @param net The network to copy
+   */
+  public FlatNetwork(FlatNetwork net) {
+    this(net.sizes[0], Arrays.copyOfRange(net.sizes, 1, net.sizes.length));
+
+    for (int l=0; l<weights.length; l++)
+      System.arraycopy(net.weights[l], 0, weights[l], 0, weights[l].length);
+
+    this.activation = net.activation;
+  }
+
+  /**
+   * Returns a view of this network which shares its weights, but has
+   * its own activations.  Updates made to the weights through either
+   * network are seen by both, while evaluations are independent, so
+   * each thread can evaluate (and train) its own view concurrently.
+   * No locking is done: concurrent updates to the same weight may
+   * overwrite each other, and an evaluation may see an update that is
+   * half applied, which stochastic training tolerates.
+   *
+   * @return A network sharing the weights of this one
+   */
+  public FlatNetwork share() {
+    FlatNetwork view = new FlatNetwork(sizes, weights);
+    view.activation = activation;
+
+    return view;
+  }
+
+  /**
+   * Returns the sigmoid this network applies
+   *
+   * @return The activation
+   */
+  public Activation getActivation() {
+    return activation;
+  }
+
+  /**
+   * Sets the sigmoid this network applies, for evaluation and for
+   * the activations training reads.  Views already shared keep the
+   * one they were made with.
+   *
+   * @param activation The activation
+   */
+  public void setActivation(Activation activation) {
+    this.activation = activation;
+  }
+
+  /**
+   * Returns the hidden layer sizes of the given network
+   *
+   * @param net The network
+   * @return The number of units in each hidden layer
+   */
+  protected static int[] getSizes(NeuralNetwork net) {
+    int[] result = new int[net.hidden.length];
+
+    for (int l=0; l<result.length; l++)
+      result[l] = net.hidden[l].length;
+
+    return result;
+  }
+
+  /**
+   * Returns the number of layers of weights
+   *
+   * @return The number of layers, not counting the input
+   */
+  public int getLayers() {
+    return weights.length;
+  }
+
+  /**
+   * Returns the number of units in the given layer, where
+   * layer 0 is the input layer.
+   *
+   * @param layer The layer
+   * @return The number of units in that layer
+   */
+  public int getSize(int layer) {
+    return sizes[layer];
+  }
+
+  /**
+   * Returns the number of input units
+   *
+   * @return The number of input units
+   */
+  public int getInputs() {
+    return sizes[0];
+  }
+
+  /**
+   * Returns the number of output units
+   *
+   * @return The number of output units
+   */
+  public int getOutputs() {
+    return sizes[sizes.length-1];
+  }
+
+  /**
+   * Calculates the network value given the provided input
+   *
+   * @param input The input to check
+   * @return The network value from this input
+   */
+  public double[] getValue(double[] input) {
+    return getValue(input, new double[getOutputs()]);
+  }
+
+  /**
+   * Calculates the network value given the provided input, writing
+   * it into the provided array rather than allocating one.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(double[] input, double[] result) {
+    forward(input);
+    System.arraycopy(activations[activations.length-1], 0, result, 0, result.length);
+
+    return result;
+  }
+
+  /**
+   * Runs the input through the network, leaving the value of
+   * every unit in activations.
+   *
+   * @param input The input to check
+   */
+  protected void forward(double[] input) {
+    double[] w = weights[0];
+    double[] out = activations[0];
+    int n = out.length;
+
+    Arrays.fill(out, 0);
+
+    for (int i=0; i<input.length; i++) {
+      double x = input[i];
+      int row = i * n;
+
+      // zero inputs add nothing, and most of the board encoding is zeros
+      if (x != 0)
+        for (int j=0; j<n; j++)
+          out[j] += w[row + j] * x;
+    }
+
+    forwardFromSums();
+  }
+
+  /**
+   * Calculates the network value given the non-zero units of
+   * the input.
+   *
+   * @param input The input to check
+   * @return The network value from this input
+   */
+  public double[] getValue(SparseInput input) {
+    return getValue(input, new double[getOutputs()]);
+  }
+
+  /**
+   * Calculates the network value given the non-zero units of
+   * the input, writing it into the provided array.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(SparseInput input, double[] result) {
+    forward(input);
+    System.arraycopy(activations[activations.length-1], 0, result, 0, result.length);
+
+    return result;
+  }
+
+  /**
+   * Runs the sparse input through the network, leaving the value of
+   * every unit in activations.  Only the weight rows of the non-zero
+   * inputs are read.
+   *
+   * @param input The input to check
+   */
+  protected void forward(SparseInput input) {
+    double[] w = weights[0];
+    double[] out = activations[0];
+    int n = out.length;
+
+    Arrays.fill(out, 0);
+
+    for (int k=0; k<input.size; k++) {
+      double x = input.value[k];
+      int row = input.index[k] * n;
+
+      for (int j=0; j<n; j++)
+        out[j] += w[row + j] * x;
+    }
+
+    forwardFromSums();
+  }
+
+  /**
+   * Finishes an evaluation whose first hidden layer sums have already
+   * been placed in activations[0], by applying the sigmoid and running
+   * the remaining layers.
+   *
+   * @return The output layer values (activations of the last layer)
+   */
+  protected double[] forwardFromSums() {
+    double[] in = activations[0];
+
+    activation.apply(in, 0, in.length);
+
+    for (int l=1; l<weights.length; l++) {
+      double[] w = weights[l];
+      double[] out = activations[l];
+      int n = out.length;
+
+      Arrays.fill(out, 0);
+
+      for (int i=0; i<in.length; i++) {
+        double x = in[i];
+        int row = i * n;
+
+        for (int j=0; j<n; j++)
+          out[j] += w[row + j] * x;
+      }
+
+      activation.apply(out, 0, n);
+
+      in = out;
+    }
+
+    return in;
+  }
+
+  /**
+   * Copies the weights of this network into the provided network,
+   * which must have the same topology.
+   *
+   * @param net The network to copy into
+   */
+  public void copyTo(NeuralNetwork net) {
+    for (int l=0; l<weights.length; l++) {
+      int n = sizes[l+1];
+
+      for (int j=0; j<n; j++) {
+        double[] w = net.hidden[l][j].weights;
+
+        for (int i=0; i<w.length; i++)
+          w[i] = weights[l][i * n + j];
+      }
+    }
+  }
+
+  /**
+   * Builds an object-per-unit NeuralNetwork with the weights
+   * of this network.
+   *
+   * @return The new network
+   */
+  public NeuralNetwork toNeuralNetwork() {
+    NeuralNetwork net = new NeuralNetwork(sizes[0], Arrays.copyOfRange(sizes, 1, sizes.length));
+    copyTo(net);
+
+    return net;
+  }
+
+  /**
+   * Method which writes this network to the given file, in the
+   * binary format of WeightFile.
+   *
+   * @param filename The file to write to
+   */
+  public void writeTo(String filename) throws IOException {
+    WeightFile.write(this, filename);
+  }
+
+  /**
+   * Method which reads and returns a network from the given file,
+   * either a WeightFile or a network serialized by NeuralNetwork.
+   *
+   * @param filename The file to read from
+   */
+  public static FlatNetwork readFrom(String filename) throws IOException, ClassNotFoundException {
+    if (WeightFile.isWeightFile(filename))
+      return WeightFile.read(filename);
+
+    return new FlatNetwork(NeuralNetwork.readFrom(filename));
+  }
+}
@@ -0,0 +1,265 @@
+package net;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A FlatNetwork in float32: the same layout, with
+ *
+ * weights[l][i * getSize(l+1) + j]
+ *
+ * the weight from unit i of layer l to unit j of layer l+1, but half
+ * the memory traffic, and evaluated with the SIMD kernels of
+ * Kernels.INSTANCE.  Values are exchanged as doubles, so that it can
+ * stand in for a FlatNetwork, but are about 7 significant digits
+ * precise rather than 16.
+ */
+public class FloatNetwork implements Evaluator {
+
+  // the number of units in each layer, including the input layer
+  protected int[] sizes;
+
+  // the weights of each layer, one row per input unit
+  public float[][] weights;
+
+  // the unit values from the last evaluation (cached)
+  public float[][] activations;
+
+  // the kernels to evaluate with
+  protected Kernels kernels = Kernels.INSTANCE;
+
+  // the sigmoid applied to every hidden and output unit
+  protected Activation activation;
+
+  /**
+   * Builds a float copy of the provided network.
+   *
+   * @param net The network to copy the weights from
+   */
+  public FloatNetwork(FlatNetwork net) {
+    this.sizes = new int[net.getLayers() + 1];
+    this.weights = new float[net.getLayers()][];
+
+    for (int l=0; l<sizes.length; l++)
+      sizes[l] = net.getSize(l);
+
+    for (int l=0; l<weights.length; l++) {
+      weights[l] = new float[net.weights[l].length];
+
+      for (int i=0; i<weights[l].length; i++)
+        weights[l][i] = (float) net.weights[l][i];
+    }
+
+    this.activation = net.getActivation();
+
+    allocate();
+  }
+
+  /**
+   * Builds a network on the provided weights, which are shared
+   * rather than copied.
+   *
+   * @param sizes The number of units in each layer, including the input
+   * @param weights The weights of each layer
+   * @param activation The sigmoid to apply
+   */
+  protected FloatNetwork(int[] sizes, float[][] weights, Activation activation) {
+    this.sizes = sizes;
+    this.weights = weights;
+    this.activation = activation;
+
+    allocate();
+  }
+
+  /**
+   * Allocates the activation buffers for the current sizes.
+   */
+  private void allocate() {
+    this.activations = new float[weights.length][];
+
+    for (int l=0; l<weights.length; l++)
+      this.activations[l] = new float[sizes[l+1]];
+  }
+
+  /**
+   * Returns a view of this network which shares its weights, but has
+   * its own activations, as FlatNetwork.share() does.
+   *
+   * @return A network sharing the weights of this one
+   */
+  public FloatNetwork share() {
+    return new FloatNetwork(sizes, weights, activation);
+  }
+
+  /**
+   * Returns the sigmoid this network applies
+   *
+   * @return The activation
+   */
+  public Activation getActivation() {
+    return activation;
+  }
+
+  /**
+   * Sets the sigmoid this network applies
+   *
+   * @param activation The activation
+   */
+  public void setActivation(Activation activation) {
+    this.activation = activation;
+  }
+
+  /**
+   * Returns the number of layers of weights
+   *
+   * @return The number of layers, not counting the input
+   */
+  public int getLayers() {
+    return weights.length;
+  }
+
+  /**
+   * Returns the number of units in the given layer, where
+   * layer 0 is the input layer.
+   *
+   * @param layer The layer
+   * @return The number of units in that layer
+   */
+  public int getSize(int layer) {
+    return sizes[layer];
+  }
+
+  /**
+   * Returns the number of input units
+   *
+   * @return The number of input units
+   */
+  public int getInputs() {
+    return sizes[0];
+  }
+
+  /**
+   * Returns the number of output units
+   *
+   * @return The number of output units
+   */
+  public int getOutputs() {
+    return sizes[sizes.length-1];
+  }
+
+  /**
+   * Calculates the network value given the provided input, writing
+   * it into the provided array.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(double[] input, double[] result) {
+    float[] out = activations[0];
+    int n = out.length;
+
+    Arrays.fill(out, 0);
+
+    // zero inputs add nothing, and most of the board encoding is zeros
+    for (int i=0; i<input.length; i++)
+      if (input[i] != 0)
+        kernels.axpy((float) input[i], weights[0], i * n, out, 0, n);
+
+    return getResult(result);
+  }
+
+  /**
+   * Calculates the network value given the non-zero units of
+   * the input, writing it into the provided array.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(SparseInput input, double[] result) {
+    float[] out = activations[0];
+    int n = out.length;
+
+    Arrays.fill(out, 0);
+
+    for (int k=0; k<input.size; k++)
+      kernels.axpy((float) input.value[k], weights[0], input.index[k] * n, out, 0, n);
+
+    return getResult(result);
+  }
+
+  /**
+   * Finishes an evaluation whose first hidden layer sums are in
+   * activations[0], and copies the output into result.
+   *
+   * @param result The array to write the network value into
+   * @return result
+   */
+  protected double[] getResult(double[] result) {
+    float[] in = activations[0];
+
+    activation.apply(in, 0, in.length);
+
+    for (int l=1; l<weights.length; l++) {
+      float[] w = weights[l];
+      float[] out = activations[l];
+      int n = out.length;
+
+      // a single output is a dot product with the (contiguous) weights
+      if (n == 1) {
+        out[0] = kernels.dot(in, 0, w, 0, in.length);
+      } else {
+        Arrays.fill(out, 0);
+
+        for (int i=0; i<in.length; i++)
+          kernels.axpy(in[i], w, i * n, out, 0, n);
+      }
+
+      activation.apply(out, 0, n);
+
+      in = out;
+    }
+
+    for (int j=0; j<result.length; j++)
+      result[j] = in[j];
+
+    return result;
+  }
+
+  /**
+   * Copies the weights of this network into the provided network,
+   * which must have the same topology.
+   *
+   * @param net The network to copy into
+   */
+  public void copyTo(FlatNetwork net) {
+    for (int l=0; l<weights.length; l++)
+      for (int i=0; i<weights[l].length; i++)
+        net.weights[l][i] = weights[l][i];
+  }
+
+  /**
+   * Builds a double precision FlatNetwork with the weights of this
+   * network.
+   *
+   * @return The new network
+   */
+  public FlatNetwork toFlatNetwork() {
+    FlatNetwork net = new FlatNetwork(sizes[0], Arrays.copyOfRange(sizes, 1, sizes.length));
+    net.setActivation(activation);
+    copyTo(net);
+
+    return net;
+  }
+
+  /**
+   * Method which writes this network to the given file, in the
+   * format of FlatNetwork.writeTo.
+   *
+   * @param filename The file to write to
+   */
+  public void writeTo(String filename) throws IOException {
+    toFlatNetwork().writeTo(filename);
+  }
+}
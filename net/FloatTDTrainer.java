@@ -0,0 +1,207 @@
+package net;
+
+import java.util.*;
+
+/**
+ * TDTrainer for a FloatNetwork: the same TD(lambda) step, in float32
+ * and on the kernels of Kernels.INSTANCE.  So that every update is a
+ * contiguous kernel call, the traces are kept one array per output,
+ *
+ * traces[l][k][i * getSize(l+1) + j]
+ *
+ * being the trace of weights[l][i * getSize(l+1) + j] for output k.
+ * As in TDTrainer, the first layer traces of an input only decay when
+ * the input is active again.
+ */
+public class FloatTDTrainer implements Trainer {
+
+  // the network being trained
+  protected FloatNetwork net;
+
+  // the trace decay
+  protected float lambda;
+
+  // the learning rate of each layer
+  protected float[] rates;
+
+  // the eligibility traces of each layer and output, laid out as described above
+  protected float[][][] traces;
+
+  // the step at which the first layer traces of each input were last updated
+  protected long[] stamp;
+
+  // the number of steps taken
+  protected long step;
+
+  // powers[n] = lambda^n, by repeated multiplication
+  protected float[] powers;
+
+  // d output_k / d sum of unit j of each layer, K rows of the layer's size
+  protected float[][] gradients;
+
+  // the difference between the expected and actual outputs
+  protected float[] error;
+
+  // where the weight changes are added, the weights themselves by default
+  protected float[][] updates;
+
+  // the kernels to train with
+  protected Kernels kernels = Kernels.INSTANCE;
+
+  /**
+   * Builds a trainer for the provided network.
+   *
+   * @param net The network to train
+   * @param lambda The trace decay
+   * @param rates The learning rate of each layer of weights
+   */
+  public FloatTDTrainer(FloatNetwork net, double lambda, double[] rates) {
+    if (rates.length != net.getLayers())
+      throw new IllegalArgumentException("Expected " + net.getLayers() + " learning rates, got " + rates.length);
+
+    int outputs = net.getOutputs();
+
+    this.net = net;
+    this.lambda = (float) lambda;
+    this.rates = new float[rates.length];
+    this.traces = new float[net.getLayers()][outputs][];
+    this.gradients = new float[net.getLayers()][];
+    this.stamp = new long[net.getInputs()];
+    this.error = new float[outputs];
+    this.updates = net.weights;
+
+    for (int l=0; l<traces.length; l++) {
+      this.rates[l] = (float) rates[l];
+      gradients[l] = new float[outputs * net.getSize(l+1)];
+
+      for (int k=0; k<outputs; k++)
+        traces[l][k] = new float[net.weights[l].length];
+    }
+
+    this.powers = new float[TDTrainer.POWERS];
+    this.powers[0] = 1.0f;
+
+    for (int n=1; n<powers.length; n++)
+      powers[n] = this.lambda * powers[n-1];
+  }
+
+  /**
+   * Makes the trainer add its weight changes to the provided arrays,
+   * laid out as the network's weights, rather than to the weights
+   * themselves.  Passing null applies them to the weights again.
+   *
+   * @param updates Where to add the weight changes, or null
+   */
+  public void setUpdates(float[][] updates) {
+    this.updates = (updates == null ? net.weights : updates);
+  }
+
+  /**
+   * Returns lambda^n, the decay of a trace left alone for n steps
+   *
+   * @param n The number of steps
+   * @return The decay
+   */
+  protected float decay(long n) {
+    return n < powers.length ? powers[(int) n] : (float) Math.pow(lambda, n);
+  }
+
+  /**
+   * Takes one TD(lambda) step towards the expected output, on the
+   * network's activations, as TDTrainer.train() does.
+   *
+   * @param input The input the network was evaluated on
+   * @param output The output to correct
+   * @param expected The output it should have been
+   */
+  public void train(double[] input, double[] output, double[] expected) {
+    int layers = net.getLayers();
+    int outputs = net.getOutputs();
+
+    step += 1;
+
+    backward();
+
+    // the traces of the layers above the first, whose inputs are all active
+    for (int l=1; l<layers; l++) {
+      float[] in = net.activations[l-1];
+      int n = net.getSize(l+1);
+
+      for (int k=0; k<outputs; k++)
+        for (int i=0; i<in.length; i++)
+          kernels.scaleAdd(lambda, traces[l][k], i * n, in[i], gradients[l], k * n, n);
+    }
+
+    // the first layer traces, only for the active inputs
+    int n = net.getSize(1);
+
+    for (int i=0; i<input.length; i++) {
+      if (input[i] == 0)
+        continue;
+
+      float d = decay(step - stamp[i]);
+
+      for (int k=0; k<outputs; k++)
+        kernels.scaleAdd(d, traces[0][k], i * n, (float) input[i], gradients[0], k * n, n);
+
+      stamp[i] = step;
+    }
+
+    for (int k=0; k<outputs; k++)
+      error[k] = (float) (expected[k] - output[k]);
+
+    for (int l=1; l<layers; l++) {
+      float[] w = updates[l];
+
+      for (int k=0; k<outputs; k++)
+        kernels.axpy(rates[l] * error[k], traces[l][k], 0, w, 0, w.length);
+    }
+
+    // every input with a trace moves its weights, active or not
+    float[] w = updates[0];
+
+    for (int i=0; i<stamp.length; i++) {
+      if (stamp[i] == 0)
+        continue;
+
+      float d = decay(step - stamp[i]);
+
+      if (d == 0)
+        continue;
+
+      for (int k=0; k<outputs; k++)
+        kernels.axpy(rates[0] * error[k] * d, traces[0][k], i * n, w, i * n, n);
+    }
+  }
+
+  /**
+   * Computes, from the current activations and weights, the derivative
+   * of each output with respect to the sum of every unit.
+   */
+  protected void backward() {
+    int layers = net.getLayers();
+    int outputs = net.getOutputs();
+    Activation activation = net.getActivation();
+    float[] top = net.activations[layers-1];
+    float[] gradient = gradients[layers-1];
+
+    Arrays.fill(gradient, 0);
+
+    for (int k=0; k<outputs; k++)
+      gradient[k * outputs + k] = activation.gradient(top[k]);
+
+    for (int l=layers-2; l>=0; l--) {
+      float[] above = gradients[l+1];
+      float[] w = net.weights[l+1];
+      float[] value = net.activations[l];
+      int m = net.getSize(l+1);
+      int n = net.getSize(l+2);
+
+      gradient = gradients[l];
+
+      for (int k=0; k<outputs; k++)
+        for (int i=0; i<m; i++)
+          gradient[k * m + i] = kernels.dot(w, i * n, above, k * n, n) * activation.gradient(value[i]);
+    }
+  }
+}
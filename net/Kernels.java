@@ -0,0 +1,77 @@
+package net;
+
+/**
+ * The float32 loops FloatNetwork and FloatTDTrainer spend their time
+ * in.  INSTANCE uses the jdk.incubator.vector SIMD kernels when the JVM
+ * was started with --add-modules jdk.incubator.vector, and plain scalar
+ * loops otherwise (or when the system property tdgammon.vector is set
+ * to false).
+ */
+public abstract class Kernels {
+
+  // the kernels used by the float networks
+  public static final Kernels INSTANCE = load();
+
+  /**
+   * Returns the dot product of length elements of a and b
+   *
+   * @param a The first array
+   * @param aOffset The first element of a
+   * @param b The second array
+   * @param bOffset The first element of b
+   * @param length The number of elements
+   * @return The dot product
+   */
+  public abstract float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+  /**
+   * Adds alpha * x to y, for length elements
+   *
+   * @param alpha The factor
+   * @param x The array to add
+   * @param xOffset The first element of x
+   * @param y The array to add to
+   * @param yOffset The first element of y
+   * @param length The number of elements
+   */
+  public abstract void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+  /**
+   * Sets y to scale * y + alpha * x, for length elements
+   *
+   * @param scale The factor of y
+   * @param y The array to update
+   * @param yOffset The first element of y
+   * @param alpha The factor of x
+   * @param x The array to add
+   * @param xOffset The first element of x
+   * @param length The number of elements
+   */
+  public abstract void scaleAdd(float scale, float[] y, int yOffset, float alpha, float[] x, int xOffset, int length);
+
+  /**
+   * Returns a short description of these kernels
+   *
+   * @return The description
+   */
+  public abstract String getName();
+
+  /**
+   * Returns the vector kernels if the incubator module is available,
+   * and the scalar ones otherwise.  The vector kernels are only
+   * loaded by name, so that nothing else depends on the module.
+   *
+   * @return The kernels to use
+   */
+  protected static Kernels load() {
+    if (! "false".equals(System.getProperty("tdgammon.vector"))) {
+      try {
+        return (Kernels) Class.forName("net.VectorKernels").getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // the module was not added to this JVM, fall back to scalar loops
+      }
+    }
+
+    return new ScalarKernels();
+  }
+}
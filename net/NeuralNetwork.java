@@ -104,11 +104,15 @@ public class NeuralNetwork implements Serializable {
   }
   
   /**
-   * Method which reads and returns a network from the given file
+   * Method which reads and returns a network from the given file,
+   * which may also be a WeightFile
    *
    * @param filename The file to read from
    */
   public static NeuralNetwork readFrom(String filename) throws IOException, ClassNotFoundException {
+    if (WeightFile.isWeightFile(filename))
+      return WeightFile.read(filename).toNeuralNetwork();
+    
     ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename));
     NeuralNetwork net = (NeuralNetwork) ois.readObject();
     ois.close();
@@ -0,0 +1,554 @@
+package net;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * A play-only network in fixed point, quantized from a trained network.
+ * The weights are 16 (or 8) bit integers, held in short[] (or byte[]),
+ * each layer scaled by its own power of two, and the layer sums are
+ * accumulated in integers.  The sigmoid is an interpolated lookup table
+ * on the fixed point sum, so that evaluation does no floating point
+ * arithmetic until the outputs are returned.
+ *
+ * The inputs are quantized to Q8 (x * 256), the hidden unit values to
+ * Q15 (x * 32768) and the outputs, straight from the table, to Q30.
+ * The scale of the first layer is chosen so that no sum of inputs up
+ * to MAX_INPUT can overflow an int; the layers above sum in a long.
+ *
+ * The file format is little-endian, as WeightFile's:
+ *
+ * int    MAGIC ("TDGQ")
+ * int    VERSION
+ * int    the number of layers, including the input, L + 1
+ * int    the size of each layer, L + 1 of them
+ * int    the bits of the weights, 8 or 16
+ * int    the scale of each layer, L of them
+ * int    the CRC32C of the weights
+ * byte or short the weights of each layer, as weights[l] or bytes[l]
+ */
+public class QuantizedNetwork implements Evaluator {
+
+  // the first 4 bytes of every quantized network file, "TDGQ" in ASCII
+  public static final int MAGIC = 0x51474454;
+
+  // the version written, and the only one read
+  public static final int VERSION = 1;
+
+  // the fraction bits of the inputs, the hidden unit values and the table
+  public static final int INPUT_BITS = 8;
+  public static final int VALUE_BITS = 15;
+  public static final int OUTPUT_BITS = 30;
+
+  // the largest input the board encoding produces (the bar and the
+  // spike overflow units are at most 7.5)
+  public static final double MAX_INPUT = 8.0;
+
+  // the sigmoid table covers sums in [-TABLE_RANGE, TABLE_RANGE], with
+  // 2^TABLE_BITS entries per unit, interpolated in 2^STEP_BITS steps
+  public static final int TABLE_RANGE = 16;
+  public static final int TABLE_BITS = 8;
+  public static final int STEP_BITS = 8;
+
+  // sigmoid(i / 2^TABLE_BITS - TABLE_RANGE) in Q30, for each entry i
+  protected static final int[] SIGMOID = buildTable();
+
+  // the number of units in each layer, including the input layer
+  protected int[] sizes;
+
+  // the number of bits of the weights, 8 or 16
+  protected int bits;
+
+  // the 16 bit weights of each layer, one row per input unit, as
+  // FlatNetwork (null for 8 bits)
+  public short[][] weights;
+
+  // the 8 bit weights of each layer, laid out the same (null for 16 bits)
+  public byte[][] bytes;
+
+  // weights[l] (or bytes[l]) is the real weight times 2^scales[l]
+  public int[] scales;
+
+  // the unit values of the last evaluation, the outputs in Q30 and the
+  // others in Q15 (cached)
+  protected int[][] activations;
+
+  /**
+   * Quantizes the provided network, with weights of the given number
+   * of bits in every layer.
+   *
+   * @param net The network to quantize
+   * @param bits The bits of the weights, 8 or 16
+   */
+  public QuantizedNetwork(FlatNetwork net, int bits) {
+    if (bits != 8 && bits != 16)
+      throw new IllegalArgumentException("Weights are 8 or 16 bits, not " + bits);
+
+    int layers = net.getLayers();
+    int limit = (bits == 16) ? Short.MAX_VALUE : Byte.MAX_VALUE;
+
+    this.bits = bits;
+    this.sizes = new int[layers + 1];
+    this.scales = new int[layers];
+
+    if (bits == 16)
+      this.weights = new short[layers][];
+    else
+      this.bytes = new byte[layers][];
+
+    for (int l=0; l<sizes.length; l++)
+      sizes[l] = net.getSize(l);
+
+    for (int l=0; l<layers; l++) {
+      double[] w = net.weights[l];
+
+      scales[l] = getScale(w, sizes[l+1], limit, l == 0);
+
+      if (bits == 16)
+        weights[l] = new short[w.length];
+      else
+        bytes[l] = new byte[w.length];
+
+      for (int i=0; i<w.length; i++) {
+        int q = (int) Math.max(-limit, Math.min(limit, Math.round(Math.scalb(w[i], scales[l]))));
+
+        if (bits == 16)
+          weights[l][i] = (short) q;
+        else
+          bytes[l][i] = (byte) q;
+      }
+    }
+
+    allocate();
+  }
+
+  /**
+   * Builds a network on the provided weights, which are shared
+   * rather than copied.
+   *
+   * @param sizes The number of units in each layer, including the input
+   * @param bits The bits of the weights, 8 or 16
+   * @param weights The 16 bit weights of each layer, or null
+   * @param bytes The 8 bit weights of each layer, or null
+   * @param scales The scale of each layer
+   */
+  protected QuantizedNetwork(int[] sizes, int bits, short[][] weights, byte[][] bytes, int[] scales) {
+    this.sizes = sizes;
+    this.bits = bits;
+    this.weights = weights;
+    this.bytes = bytes;
+    this.scales = scales;
+
+    allocate();
+  }
+
+  /**
+   * Allocates the activation buffers for the current sizes.
+   */
+  private void allocate() {
+    this.activations = new int[scales.length][];
+
+    for (int l=0; l<scales.length; l++)
+      this.activations[l] = new int[sizes[l+1]];
+  }
+
+  /**
+   * Returns the largest power of two the weights can be scaled by so
+   * that they fit in limit, and for the first layer so that no sum of
+   * inputs up to MAX_INPUT overflows an int.
+   *
+   * @param w The weights, one row per input unit
+   * @param n The number of units the weights lead to
+   * @param limit The largest weight allowed
+   * @param input Whether these are the weights of the input layer
+   * @return The scale, as a power of two
+   */
+  protected static int getScale(double[] w, int n, int limit, boolean input) {
+    double max = 0;
+
+    for (int i=0; i<w.length; i++)
+      max = Math.max(max, Math.abs(w[i]));
+
+    double factor = limit / Math.max(max, Double.MIN_NORMAL);
+
+    if (input) {
+      double[] sum = new double[n];
+
+      for (int i=0; i<w.length; i++)
+        sum[i % n] += Math.abs(w[i]) * Math.scalb(MAX_INPUT, INPUT_BITS);
+
+      // half of the int range, leaving room for the rounding of the weights
+      for (int j=0; j<n; j++)
+        factor = Math.min(factor, (Integer.MAX_VALUE / 2) / Math.max(sum[j], Double.MIN_NORMAL));
+    }
+
+    return Math.min(30, Math.getExponent(factor));
+  }
+
+  /**
+   * Builds the sigmoid table.
+   *
+   * @return The table
+   */
+  protected static int[] buildTable() {
+    int[] table = new int[(2 * TABLE_RANGE << TABLE_BITS) + 1];
+
+    for (int i=0; i<table.length; i++) {
+      double x = Math.scalb((double) i, -TABLE_BITS) - TABLE_RANGE;
+      table[i] = (int) Math.round(Math.scalb(1 / (1 + Math.exp(-x)), OUTPUT_BITS));
+    }
+
+    return table;
+  }
+
+  /**
+   * Returns the sigmoid of a fixed point sum, interpolated between
+   * the two nearest entries of the table.
+   *
+   * @param sum The sum
+   * @param bits The fraction bits of the sum
+   * @return The sigmoid, in Q30
+   */
+  protected static int sigmoid(long sum, int bits) {
+    int shift = bits - TABLE_BITS - STEP_BITS;
+    long position = (shift > 0) ? sum >> shift : sum << -shift;
+    position += (long) TABLE_RANGE << (TABLE_BITS + STEP_BITS);
+
+    if (position <= 0)
+      return SIGMOID[0];
+    if (position >= (long) (SIGMOID.length - 1) << STEP_BITS)
+      return SIGMOID[SIGMOID.length - 1];
+
+    int index = (int) (position >> STEP_BITS);
+    long step = position & ((1 << STEP_BITS) - 1);
+
+    return SIGMOID[index] + (int) (((SIGMOID[index + 1] - SIGMOID[index]) * step) >> STEP_BITS);
+  }
+
+  /**
+   * Returns the Q15 hidden unit value of a Q30 sigmoid
+   *
+   * @param value The sigmoid, in Q30
+   * @return The value, in Q15
+   */
+  protected static int toValue(int value) {
+    return (value + (1 << (OUTPUT_BITS - VALUE_BITS - 1))) >> (OUTPUT_BITS - VALUE_BITS);
+  }
+
+  /**
+   * Returns a view of this network which shares its weights, but has
+   * its own activations, for evaluating on another thread.
+   *
+   * @return A network sharing the weights of this one
+   */
+  public QuantizedNetwork share() {
+    return new QuantizedNetwork(sizes, bits, weights, bytes, scales);
+  }
+
+  /**
+   * Returns the number of layers of weights
+   *
+   * @return The number of layers, not counting the input
+   */
+  public int getLayers() {
+    return scales.length;
+  }
+
+  /**
+   * Returns the number of units in the given layer, where
+   * layer 0 is the input layer.
+   *
+   * @param layer The layer
+   * @return The number of units in that layer
+   */
+  public int getSize(int layer) {
+    return sizes[layer];
+  }
+
+  /**
+   * Returns the number of input units
+   *
+   * @return The number of input units
+   */
+  public int getInputs() {
+    return sizes[0];
+  }
+
+  /**
+   * Returns the number of output units
+   *
+   * @return The number of output units
+   */
+  public int getOutputs() {
+    return sizes[sizes.length-1];
+  }
+
+  /**
+   * Returns the bits of the weights
+   *
+   * @return 8 or 16
+   */
+  public int getBits() {
+    return bits;
+  }
+
+  /**
+   * Quantizes an input to Q8
+   *
+   * @param x The input
+   * @return The quantized input
+   */
+  protected static int quantize(double x) {
+    return (int) Math.round(Math.scalb(Math.max(-MAX_INPUT, Math.min(MAX_INPUT, x)), INPUT_BITS));
+  }
+
+  /**
+   * Calculates the network value given the provided input, writing
+   * it into the provided array.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(double[] input, double[] result) {
+    int[] out = activations[0];
+
+    Arrays.fill(out, 0);
+
+    for (int i=0; i<input.length; i++)
+      if (input[i] != 0)
+        addRow(i, quantize(input[i]), out);
+
+    return getResult(result);
+  }
+
+  /**
+   * Calculates the network value given the non-zero units of
+   * the input, writing it into the provided array.
+   *
+   * @param input The input to check
+   * @param result The array to write the network value into
+   * @return result
+   */
+  public double[] getValue(SparseInput input, double[] result) {
+    int[] out = activations[0];
+
+    Arrays.fill(out, 0);
+
+    for (int k=0; k<input.size; k++)
+      addRow(input.index[k], quantize(input.value[k]), out);
+
+    return getResult(result);
+  }
+
+  /**
+   * Adds the weights of the given input unit to the first hidden
+   * layer, times its quantized value.
+   *
+   * @param i The input unit
+   * @param x Its value, in Q8
+   * @param out The sums of the first hidden layer
+   */
+  protected void addRow(int i, int x, int[] out) {
+    int n = out.length;
+    int row = i * n;
+
+    if (bytes != null) {
+      byte[] w = bytes[0];
+
+      for (int j=0; j<n; j++)
+        out[j] += w[row + j] * x;
+    } else {
+      short[] w = weights[0];
+
+      for (int j=0; j<n; j++)
+        out[j] += w[row + j] * x;
+    }
+  }
+
+  /**
+   * Finishes an evaluation whose first hidden layer sums are in
+   * activations[0], and writes the outputs into result.
+   *
+   * @param result The array to write the network value into
+   * @return result
+   */
+  protected double[] getResult(double[] result) {
+    int[] in = activations[0];
+
+    int last = scales.length - 1;
+
+    for (int j=0; j<in.length; j++) {
+      in[j] = sigmoid(in[j], INPUT_BITS + scales[0]);
+
+      if (last > 0)
+        in[j] = toValue(in[j]);
+    }
+
+    for (int l=1; l<scales.length; l++) {
+      int[] out = activations[l];
+      int n = out.length;
+
+      for (int j=0; j<n; j++) {
+        long sum = 0;
+
+        if (bytes != null) {
+          byte[] w = bytes[l];
+
+          for (int i=0; i<in.length; i++)
+            sum += (long) w[i * n + j] * in[i];
+        } else {
+          short[] w = weights[l];
+
+          for (int i=0; i<in.length; i++)
+            sum += (long) w[i * n + j] * in[i];
+        }
+
+        out[j] = sigmoid(sum, VALUE_BITS + scales[l]);
+
+        if (l < last)
+          out[j] = toValue(out[j]);
+      }
+
+      in = out;
+    }
+
+    for (int j=0; j<result.length; j++)
+      result[j] = Math.scalb((double) in[j], -OUTPUT_BITS);
+
+    return result;
+  }
+
+  /**
+   * Returns the size of the header of a file with the given number
+   * of layers, including the input.
+   *
+   * @param layers The number of layers
+   * @return The header size, in bytes
+   */
+  protected static int getHeaderSize(int layers) {
+    return 12 + 4 * layers + 4 + 4 * (layers - 1) + 4;
+  }
+
+  /**
+   * Method which writes this network to the given file, in the format
+   * described above.  As with WeightFile.write, the file is written
+   * next to its destination and then moved over it.
+   *
+   * @param filename The file to write to
+   */
+  public void writeTo(String filename) throws IOException {
+    int header = getHeaderSize(sizes.length);
+    int length = header;
+
+    for (int l=0; l<scales.length; l++)
+      length += (bits / 8) * sizes[l] * sizes[l+1];
+
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(sizes.length);
+
+    for (int l=0; l<sizes.length; l++)
+      buffer.putInt(sizes[l]);
+
+    buffer.putInt(bits);
+
+    for (int l=0; l<scales.length; l++)
+      buffer.putInt(scales[l]);
+
+    buffer.position(header);
+
+    for (int l=0; l<scales.length; l++) {
+      if (bits == 16) {
+        buffer.asShortBuffer().put(weights[l]);
+        buffer.position(buffer.position() + 2 * weights[l].length);
+      } else {
+        buffer.put(bytes[l]);
+      }
+    }
+
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.array(), header, length - header);
+    buffer.putInt(header - 4, (int) crc.getValue());
+
+    WeightFile.replace(buffer, filename);
+  }
+
+  /**
+   * Method which reads and returns a network written by writeTo,
+   * checking its header, its length and the checksum of its weights.
+   *
+   * @param filename The file to read from
+   */
+  public static QuantizedNetwork readFrom(String filename) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename))).order(ByteOrder.LITTLE_ENDIAN);
+    int length = buffer.capacity();
+
+    if (length < getHeaderSize(2))
+      throw new IOException(filename + " is too short to be a quantized network");
+    if (buffer.getInt(0) != MAGIC)
+      throw new IOException(filename + " is not a quantized network");
+    if (buffer.getInt(4) != VERSION)
+      throw new IOException(filename + " is version " + buffer.getInt(4) + " of the quantized network format, expected " + VERSION);
+
+    int layers = buffer.getInt(8);
+
+    if (layers < 2 || layers > WeightFile.MAX_LAYERS || length < getHeaderSize(layers))
+      throw new IOException(filename + " declares " + layers + " layers");
+
+    int[] sizes = new int[layers];
+    int bits = buffer.getInt(12 + 4 * layers);
+    int[] scales = new int[layers - 1];
+    int header = getHeaderSize(layers);
+    long expected = header;
+
+    if (bits != 8 && bits != 16)
+      throw new IOException(filename + " declares " + bits + " bit weights");
+
+    for (int l=0; l<layers; l++) {
+      sizes[l] = buffer.getInt(12 + 4 * l);
+
+      if (sizes[l] <= 0)
+        throw new IOException(filename + " declares a layer of " + sizes[l] + " units");
+      if (l > 0)
+        expected += (bits / 8) * (long) sizes[l-1] * sizes[l];
+    }
+
+    if (length != expected)
+      throw new IOException(filename + " is " + length + " bytes, expected " + expected);
+
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.array(), header, length - header);
+
+    if ((int) crc.getValue() != buffer.getInt(header - 4))
+      throw new IOException(filename + " has a bad checksum");
+
+    for (int l=0; l<scales.length; l++)
+      scales[l] = buffer.getInt(16 + 4 * layers + 4 * l);
+
+    short[][] weights = (bits == 16) ? new short[layers - 1][] : null;
+    byte[][] bytes = (bits == 8) ? new byte[layers - 1][] : null;
+
+    buffer.position(header);
+
+    for (int l=0; l<scales.length; l++) {
+      int count = sizes[l] * sizes[l+1];
+
+      if (bits == 16) {
+        weights[l] = new short[count];
+        buffer.asShortBuffer().get(weights[l]);
+        buffer.position(buffer.position() + 2 * count);
+      } else {
+        bytes[l] = new byte[count];
+        buffer.get(bytes[l]);
+      }
+    }
+
+    return new QuantizedNetwork(sizes, bits, weights, bytes, scales);
+  }
+}
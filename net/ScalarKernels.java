@@ -0,0 +1,30 @@
+package net;
+
+/**
+ * The kernels as plain loops, for JVMs without the vector module.
+ */
+public class ScalarKernels extends Kernels {
+
+  public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+    float sum = 0;
+
+    for (int i=0; i<length; i++)
+      sum += a[aOffset + i] * b[bOffset + i];
+
+    return sum;
+  }
+
+  public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+    for (int i=0; i<length; i++)
+      y[yOffset + i] += alpha * x[xOffset + i];
+  }
+
+  public void scaleAdd(float scale, float[] y, int yOffset, float alpha, float[] x, int xOffset, int length) {
+    for (int i=0; i<length; i++)
+      y[yOffset + i] = scale * y[yOffset + i] + alpha * x[xOffset + i];
+  }
+
+  public String getName() {
+    return "scalar";
+  }
+}
@@ -0,0 +1,67 @@
+package net;
+
+/**
+ * A network input stored as the list of its non-zero units, as
+ * (index, value) pairs in increasing index order.  Board encodings
+ * are mostly zeros, so evaluating this form skips most of the
+ * first layer.
+ */
+public class SparseInput {
+
+  // the indices of the non-zero input units
+  public int[] index;
+
+  // the values of the non-zero input units
+  public double[] value;
+
+  // the number of non-zero input units
+  public int size;
+
+  /**
+   * Builds an empty sparse input with room for the given
+   * number of non-zero units.
+   *
+   * @param capacity The maximum number of non-zero units
+   */
+  public SparseInput(int capacity) {
+    this.index = new int[capacity];
+    this.value = new double[capacity];
+  }
+
+  /**
+   * Removes all of the units
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Adds a unit, ignoring zero values.  Units must be added
+   * in increasing index order.
+   *
+   * @param i The index of the unit
+   * @param v The value of the unit
+   */
+  public void add(int i, double v) {
+    if (v != 0) {
+      index[size] = i;
+      value[size] = v;
+      size++;
+    }
+  }
+
+  /**
+   * Returns the dense form of this input
+   *
+   * @param length The number of input units
+   * @return The input with all of its zeros
+   */
+  public double[] toDense(int length) {
+    double[] result = new double[length];
+
+    for (int k=0; k<size; k++)
+      result[index[k]] = value[k];
+
+    return result;
+  }
+}
@@ -0,0 +1,276 @@
+package net;
+
+import java.util.*;
+
+/**
+ * Trains a FlatNetwork of any depth and any number of outputs with
+ * TD(lambda).  Every weight keeps one eligibility trace per output,
+ *
+ * e[w][k] = lambda * e[w][k] + d output_k / d w
+ *
+ * and each step moves it by rate * sum_k error_k * e[w][k], the rate
+ * being chosen per layer.  The traces of a layer are stored like its
+ * weights, with the K traces of a weight next to each other, so that
+ *
+ * traces[l][(i * getSize(l+1) + j) * K + k]
+ *
+ * is the trace of weights[l][i * getSize(l+1) + j] for output k.  Each
+ * update runs along a row for one output at a time, which for a single
+ * output is a unit-stride loop the JIT can vectorize.
+ *
+ * Most inputs are zero, and the trace of a zero input only decays, so
+ * the first layer traces of an input are only brought up to date when
+ * the input is active again: their true value is
+ * lambda^(step - stamp[i]) times what is stored.
+ */
+public class TDTrainer implements Trainer {
+
+  // the network being trained
+  protected FlatNetwork net;
+
+  // the trace decay
+  protected double lambda;
+
+  // the learning rate of each layer
+  protected double[] rates;
+
+  // the eligibility traces of each layer, laid out as described above
+  protected double[][] traces;
+
+  // the step at which the first layer traces of each input were last updated
+  protected long[] stamp;
+
+  // the number of steps taken
+  protected long step;
+
+  // powers[n] = lambda^n, by repeated multiplication
+  protected double[] powers;
+
+  // d output_k / d sum of unit j of each layer, K rows of the layer's size
+  protected double[][] gradients;
+
+  // the difference between the expected and actual outputs
+  protected double[] error;
+
+  // where the weight changes are added, the weights themselves by default
+  protected double[][] updates;
+
+  // the number of precomputed powers of lambda
+  protected static final int POWERS = 1024;
+
+  /**
+   * Builds a trainer for the provided network.
+   *
+   * @param net The network to train
+   * @param lambda The trace decay
+   * @param rates The learning rate of each layer of weights
+   */
+  public TDTrainer(FlatNetwork net, double lambda, double[] rates) {
+    if (rates.length != net.getLayers())
+      throw new IllegalArgumentException("Expected " + net.getLayers() + " learning rates, got " + rates.length);
+
+    int outputs = net.getOutputs();
+
+    this.net = net;
+    this.lambda = lambda;
+    this.rates = rates.clone();
+    this.traces = new double[net.getLayers()][];
+    this.gradients = new double[net.getLayers()][];
+    this.stamp = new long[net.getInputs()];
+    this.error = new double[outputs];
+    this.updates = net.weights;
+
+    for (int l=0; l<traces.length; l++) {
+      traces[l] = new double[net.weights[l].length * outputs];
+      gradients[l] = new double[outputs * net.getSize(l+1)];
+    }
+
+    this.powers = new double[POWERS];
+    this.powers[0] = 1.0;
+
+    for (int n=1; n<POWERS; n++)
+      powers[n] = lambda * powers[n-1];
+  }
+
+  /**
+   * Returns the network being trained
+   *
+   * @return The network
+   */
+  public FlatNetwork getNetwork() {
+    return net;
+  }
+
+  /**
+   * Makes the trainer add its weight changes to the provided arrays,
+   * laid out as the network's weights, rather than to the weights
+   * themselves, so that they can be applied later.  Passing null
+   * applies them to the weights again.
+   *
+   * @param updates Where to add the weight changes, or null
+   */
+  public void setUpdates(double[][] updates) {
+    this.updates = (updates == null ? net.weights : updates);
+  }
+
+  /**
+   * Returns lambda^n, the decay of a trace left alone for n steps
+   *
+   * @param n The number of steps
+   * @return The decay
+   */
+  protected double decay(long n) {
+    return n < POWERS ? powers[(int) n] : Math.pow(lambda, n);
+  }
+
+  /**
+   * Takes one TD(lambda) step towards the expected output.  The unit
+   * values are read from the network's activations, so the network must
+   * have been evaluated (on input, normally) since it was last changed.
+   *
+   * @param input The input the network was evaluated on
+   * @param output The output to correct
+   * @param expected The output it should have been
+   */
+  public void train(double[] input, double[] output, double[] expected) {
+    int layers = net.getLayers();
+    int outputs = net.getOutputs();
+
+    step += 1;
+
+    backward();
+
+    // the traces of the layers above the first, whose inputs are all active
+    for (int l=1; l<layers; l++) {
+      double[] in = net.activations[l-1];
+      int n = net.getSize(l+1);
+
+      for (int i=0; i<in.length; i++)
+        for (int k=0; k<outputs; k++)
+          scaleAdd(lambda, traces[l], i * n * outputs + k, outputs, in[i], gradients[l], k * n, n);
+    }
+
+    // the first layer traces, only for the active inputs
+    int n = net.getSize(1);
+
+    for (int i=0; i<input.length; i++) {
+      if (input[i] == 0)
+        continue;
+
+      double d = decay(step - stamp[i]);
+
+      for (int k=0; k<outputs; k++)
+        scaleAdd(d, traces[0], i * n * outputs + k, outputs, input[i], gradients[0], k * n, n);
+
+      stamp[i] = step;
+    }
+
+    for (int k=0; k<outputs; k++)
+      error[k] = expected[k] - output[k];
+
+    // for each weight the outputs' changes are still added in order of k
+    for (int l=1; l<layers; l++)
+      for (int k=0; k<outputs; k++)
+        axpy(rates[l] * error[k], traces[l], k, outputs, updates[l], 0, updates[l].length);
+
+    // every input with a trace moves its weights, active or not, each
+    // with its pending decay; inputs never active, or decayed to nothing,
+    // are skipped
+    for (int i=0; i<stamp.length; i++) {
+      if (stamp[i] == 0)
+        continue;
+
+      double d = decay(step - stamp[i]);
+
+      if (d == 0)
+        continue;
+
+      for (int k=0; k<outputs; k++)
+        axpy(rates[0] * error[k] * d, traces[0], i * n * outputs + k, outputs, updates[0], i * n, n);
+    }
+  }
+
+  /**
+   * Sets every stride-th element of y, from yOffset, to
+   * scale * y + x * alpha, for length elements of x.  With a single
+   * output the stride is 1, and the loop can be vectorized.
+   *
+   * @param scale The factor of y
+   * @param y The array to update
+   * @param yOffset The first element of y
+   * @param stride The distance between the elements of y
+   * @param alpha The factor of x
+   * @param x The array to add
+   * @param xOffset The first element of x
+   * @param length The number of elements
+   */
+  protected static void scaleAdd(double scale, double[] y, int yOffset, int stride, double alpha, double[] x, int xOffset, int length) {
+    if (stride == 1) {
+      for (int j=0; j<length; j++)
+        y[yOffset + j] = (scale * y[yOffset + j]) + (x[xOffset + j] * alpha);
+    } else {
+      for (int j=0; j<length; j++)
+        y[yOffset + j * stride] = (scale * y[yOffset + j * stride]) + (x[xOffset + j] * alpha);
+    }
+  }
+
+  /**
+   * Adds alpha times every stride-th element of x, from xOffset, to
+   * length elements of y.  With a single output the stride is 1, and
+   * the loop can be vectorized.
+   *
+   * @param alpha The factor of x
+   * @param x The array to add
+   * @param xOffset The first element of x
+   * @param stride The distance between the elements of x
+   * @param y The array to add to
+   * @param yOffset The first element of y
+   * @param length The number of elements
+   */
+  protected static void axpy(double alpha, double[] x, int xOffset, int stride, double[] y, int yOffset, int length) {
+    if (stride == 1) {
+      for (int j=0; j<length; j++)
+        y[yOffset + j] += alpha * x[xOffset + j];
+    } else {
+      for (int j=0; j<length; j++)
+        y[yOffset + j] += alpha * x[xOffset + j * stride];
+    }
+  }
+
+  /**
+   * Computes, from the current activations and weights, the derivative
+   * of each output with respect to the sum of every unit.
+   */
+  protected void backward() {
+    int layers = net.getLayers();
+    int outputs = net.getOutputs();
+    Activation activation = net.getActivation();
+    double[] top = net.activations[layers-1];
+    double[] gradient = gradients[layers-1];
+
+    Arrays.fill(gradient, 0);
+
+    for (int k=0; k<outputs; k++)
+      gradient[k * outputs + k] = activation.gradient(top[k]);
+
+    for (int l=layers-2; l>=0; l--) {
+      double[] above = gradients[l+1];
+      double[] w = net.weights[l+1];
+      double[] value = net.activations[l];
+      int m = net.getSize(l+1);
+      int n = net.getSize(l+2);
+
+      gradient = gradients[l];
+
+      for (int k=0; k<outputs; k++)
+        for (int i=0; i<m; i++) {
+          double sum = 0;
+
+          for (int j=0; j<n; j++)
+            sum += w[i * n + j] * above[k * n + j];
+
+          gradient[k * m + i] = sum * activation.gradient(value[i]);
+        }
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package net;
+
+/**
+ * Interface for anything which trains a network from the difference
+ * between its output and the output expected.
+ */
+public interface Trainer {
+
+  /**
+   * Takes one training step towards the expected output, on the unit
+   * values of the network's last evaluation.
+   *
+   * @param input The input the network was evaluated on
+   * @param output The output to correct
+   * @param expected The output it should have been
+   */
+  public void train(double[] input, double[] output, double[] expected);
+}
@@ -0,0 +1,68 @@
+package net;
+
+import jdk.incubator.vector.*;
+
+/**
+ * The kernels on jdk.incubator.vector, using the widest vectors the
+ * CPU has (8 floats with AVX2, 16 with AVX-512), with a scalar loop
+ * for the elements left over.  Only loaded through Kernels.load(), as
+ * it needs --add-modules jdk.incubator.vector.
+ */
+public class VectorKernels extends Kernels {
+
+  // the vector shape used
+  protected static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+  public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+    FloatVector sum = FloatVector.zero(SPECIES);
+    int bound = SPECIES.loopBound(length);
+    int i = 0;
+
+    for (; i<bound; i+=SPECIES.length()) {
+      FloatVector x = FloatVector.fromArray(SPECIES, a, aOffset + i);
+      FloatVector y = FloatVector.fromArray(SPECIES, b, bOffset + i);
+      sum = x.fma(y, sum);
+    }
+
+    float result = sum.reduceLanes(VectorOperators.ADD);
+
+    for (; i<length; i++)
+      result += a[aOffset + i] * b[bOffset + i];
+
+    return result;
+  }
+
+  public void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+    FloatVector a = FloatVector.broadcast(SPECIES, alpha);
+    int bound = SPECIES.loopBound(length);
+    int i = 0;
+
+    for (; i<bound; i+=SPECIES.length()) {
+      FloatVector v = FloatVector.fromArray(SPECIES, x, xOffset + i);
+      FloatVector w = FloatVector.fromArray(SPECIES, y, yOffset + i);
+      v.fma(a, w).intoArray(y, yOffset + i);
+    }
+
+    for (; i<length; i++)
+      y[yOffset + i] += alpha * x[xOffset + i];
+  }
+
+  public void scaleAdd(float scale, float[] y, int yOffset, float alpha, float[] x, int xOffset, int length) {
+    FloatVector s = FloatVector.broadcast(SPECIES, scale);
+    int bound = SPECIES.loopBound(length);
+    int i = 0;
+
+    for (; i<bound; i+=SPECIES.length()) {
+      FloatVector v = FloatVector.fromArray(SPECIES, x, xOffset + i).mul(alpha);
+      FloatVector w = FloatVector.fromArray(SPECIES, y, yOffset + i);
+      w.fma(s, v).intoArray(y, yOffset + i);
+    }
+
+    for (; i<length; i++)
+      y[yOffset + i] = scale * y[yOffset + i] + alpha * x[xOffset + i];
+  }
+
+  public String getName() {
+    return "vector (" + SPECIES.vectorBitSize() + " bit)";
+  }
+}
@@ -0,0 +1,199 @@
+package net;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+/**
+ * The binary weight file format, which replaces the Java serialization
+ * of a whole NeuralNetwork.  Everything is little-endian:
+ *
+ * int    MAGIC ("TDGW")
+ * int    VERSION
+ * int    the number of layers, including the input, L + 1
+ * int    the size of each layer, L + 1 of them
+ * int    the CRC32C of the weights
+ * (zeros to the next multiple of 8 bytes)
+ * double the weights of each layer, as FlatNetwork.weights[l]
+ *
+ * Files are read whole into a heap buffer, rather than mapped, so that
+ * no mapping keeps the file open (which stops it being replaced on
+ * Windows) after read returns, and the weights copied out of it with
+ * one bulk get per layer.
+ */
+public class WeightFile {
+
+  // the first 4 bytes of every weight file, "TDGW" in ASCII
+  public static final int MAGIC = 0x57474454;
+
+  // the version written, and the only one read
+  public static final int VERSION = 1;
+
+  // the most layers a file may declare, to reject corrupt headers
+  protected static final int MAX_LAYERS = 64;
+
+  /**
+   * Returns the size of the header of a file with the given number
+   * of layers (including the input), padded to a multiple of 8.
+   *
+   * @param layers The number of layers
+   * @return The header size, in bytes
+   */
+  protected static int getHeaderSize(int layers) {
+    return (12 + 4 * layers + 4 + 7) & ~7;
+  }
+
+  /**
+   * Returns whether the given file starts like a weight file, rather
+   * than like a serialized NeuralNetwork.
+   *
+   * @param filename The file to check
+   * @return Whether it is a weight file
+   */
+  public static boolean isWeightFile(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+      while (magic.hasRemaining())
+        if (channel.read(magic) < 0)
+          return false;
+
+      return magic.getInt(0) == MAGIC;
+    }
+  }
+
+  /**
+   * Writes the given network to the given file.  The file is written
+   * next to its destination and then moved over it, so that a run
+   * which is stopped while saving never leaves half a network behind.
+   *
+   * @param net The network to write
+   * @param filename The file to write to
+   */
+  public static void write(FlatNetwork net, String filename) throws IOException {
+    int layers = net.getLayers() + 1;
+    int header = getHeaderSize(layers);
+    long length = header;
+
+    for (int l=0; l<net.getLayers(); l++)
+      length += 8L * net.weights[l].length;
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+
+    buffer.putInt(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(layers);
+
+    for (int l=0; l<layers; l++)
+      buffer.putInt(net.getSize(l));
+
+    buffer.position(header);
+
+    for (int l=0; l<net.getLayers(); l++)
+      for (double w : net.weights[l])
+        buffer.putDouble(w);
+
+    CRC32C crc = new CRC32C();
+    crc.update(buffer.array(), header, (int) length - header);
+    buffer.putInt(12 + 4 * layers, (int) crc.getValue());
+
+    replace(buffer, filename);
+  }
+
+  /**
+   * Writes the whole of the given buffer to the given file, through a
+   * temporary file next to it which is then moved over it, so that a
+   * run which is stopped while saving never leaves half a file behind.
+   *
+   * @param buffer The contents of the file, from 0 to its capacity
+   * @param filename The file to write to
+   */
+  protected static void replace(ByteBuffer buffer, String filename) throws IOException {
+    Path path = Paths.get(filename).toAbsolutePath();
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      buffer.clear();
+
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    }
+
+    try {
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Reads the network in the given file, checking its header, its
+   * length and the checksum of its weights.
+   *
+   * @param filename The file to read from
+   * @return The network
+   */
+  public static FlatNetwork read(String filename) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      long length = channel.size();
+
+      if (length < getHeaderSize(2))
+        throw new IOException(filename + " is too short to be a weight file");
+
+      if (length > Integer.MAX_VALUE)
+        throw new IOException(filename + " is too long to be a weight file");
+
+      ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+
+      while (buffer.hasRemaining())
+        if (channel.read(buffer) < 0)
+          throw new EOFException(filename + " ended after " + buffer.position() + " bytes");
+
+      if (buffer.getInt(0) != MAGIC)
+        throw new IOException(filename + " is not a weight file");
+      if (buffer.getInt(4) != VERSION)
+        throw new IOException(filename + " is version " + buffer.getInt(4) + " of the weight file format, expected " + VERSION);
+
+      int layers = buffer.getInt(8);
+
+      if (layers < 2 || layers > MAX_LAYERS)
+        throw new IOException(filename + " declares " + layers + " layers");
+      if (length < getHeaderSize(layers))
+        throw new IOException(filename + " is too short for the header of " + layers + " layers");
+
+      int[] sizes = new int[layers];
+      int header = getHeaderSize(layers);
+      long expected = header;
+
+      for (int l=0; l<layers; l++) {
+        sizes[l] = buffer.getInt(12 + 4 * l);
+
+        if (sizes[l] <= 0)
+          throw new IOException(filename + " declares a layer of " + sizes[l] + " units");
+        if (l > 0)
+          expected += 8L * sizes[l-1] * sizes[l];
+      }
+
+      if (length != expected)
+        throw new IOException(filename + " is " + length + " bytes, expected " + expected);
+
+      CRC32C crc = new CRC32C();
+      crc.update(buffer.duplicate().position(header));
+
+      if ((int) crc.getValue() != buffer.getInt(12 + 4 * layers))
+        throw new IOException(filename + " has a bad checksum");
+
+      double[][] weights = new double[layers - 1][];
+      DoubleBuffer values = buffer.position(header).asDoubleBuffer();
+
+      for (int l=0; l<weights.length; l++) {
+        weights[l] = new double[sizes[l] * sizes[l+1]];
+        values.get(weights[l]);
+      }
+
+      return new FlatNetwork(sizes, weights);
+    }
+  }
+}
@@ -3,10 +3,12 @@ package player;
 
 import game.Backgammon;
 import move.Move;
+import move.MoveGenerator;
 import net.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import board.Board;
 import player.Utility;
@@ -25,27 +27,97 @@ import player.Utility;
 public class BackPropPlayer2 implements Player {
 	
 	//Static because shared with otherplayer instance
-	static public NeuralNetwork net = new NeuralNetwork(196, new int[] {40, 1});
+	static public FlatNetwork net = new FlatNetwork(196, new int[] {40, 1});
+	//Whether SavedNN has already been imported into net
+	private static boolean imported = false;
+	//The network this instance plays and trains; other instances (and threads) may share its weights
+	//(null when playing a float32 FloatNetwork)
+	private final FlatNetwork network;
+	//The network being played, whichever its representation
+	private final Evaluator evaluator;
 	private final boolean learningMode;
+	//Scores the candidate moves of one roll as deltas from the board before the move (FlatNetwork only)
+	private final Accumulator accumulator;
+	//Caches the outputs of positions already evaluated, by key and perspective (null for none)
+	private EvaluationCache cache;
+	//Enumerates the positions reachable with the current roll
+	private MoveGenerator generator = new MoveGenerator();
 	private double LAMBDA,ALPHA,BETA;
 	//Not declared static as each opponent has its own copy of eligibility traces(not sure if its correct)
-	private double[][] Ew = new double[net.hidden[0].length][net.hidden[1].length];
-	private double[][][] Ev = new double[net.input.length][net.hidden[0].length][net.hidden[1].length];
+	private final Trainer trainer;
+	//Reusable encoder and output buffers, so that no arrays are allocated per move
+	private double[] rootinput = new double[196], candidateinput = new double[196];
+	private double[] currentinput = new double[196];
+	private SparseInput sparseinput = new SparseInput(196);
+	private double[] candidateoutput, currentoutput, nextoutput, actual;
 	public BackPropPlayer2(double lambda,double alpha, boolean learningmode){
-		for (int j = 0; j < net.hidden[0].length; j++)
-		for (int k = 0; k < net.hidden[1].length; k++) {
-			Ew[j][k]=0.0;
-			for (int i = 0; i < net.input.length; i++) Ev[i][j][k] = 0.0;
-		}
+		this(lambda, alpha, learningmode, importNetwork());
+	}
+
+	/*
+	 * A player on the given network rather than the static one. The network is used for
+	 * evaluation from this instance only, so players running on different threads need
+	 * their own FlatNetwork, e.g. views from FlatNetwork.share() on a common set of weights
+	 */
+	public BackPropPlayer2(double lambda,double alpha, boolean learningmode, FlatNetwork network){
+		this.network = network;
+		evaluator = network;
+		accumulator = new Accumulator(network);
 		LAMBDA = lambda;
 		ALPHA = alpha*0.8;
 		BETA = alpha*0.2;
+		trainer = new TDTrainer(network, LAMBDA, getRates(network.getLayers()));
 		learningMode = learningmode;
-		
-		if (new File("SavedNN").isFile()){
+		allocateOutputs();
+	}
+
+	/*
+	 * A player on a float32 network, evaluated and trained with the SIMD kernels where the
+	 * JVM has them (see net.Kernels). Candidates are scored by sparse evaluation rather than
+	 * by the accumulator
+	 */
+	public BackPropPlayer2(double lambda,double alpha, boolean learningmode, FloatNetwork network){
+		this.network = null;
+		evaluator = network;
+		accumulator = null;
+		LAMBDA = lambda;
+		ALPHA = alpha*0.8;
+		BETA = alpha*0.2;
+		trainer = new FloatTDTrainer(network, LAMBDA, getRates(network.getLayers()));
+		learningMode = learningmode;
+		allocateOutputs();
+	}
+
+	/*
+	 * A play-only player on any evaluator, e.g. a QuantizedNetwork: it never learns
+	 */
+	public BackPropPlayer2(Evaluator evaluator){
+		this.network = null;
+		this.evaluator = evaluator;
+		accumulator = null;
+		trainer = null;
+		learningMode = false;
+		allocateOutputs();
+	}
+
+	/*
+	 * The learning rate of each layer: ALPHA for the input weights, BETA for every layer above
+	 */
+	private double[] getRates(int layers){
+		double[] rates = new double[layers];
+		Arrays.fill(rates, BETA);
+		rates[0] = ALPHA;
+		return rates;
+	}
+
+	/*
+	 * Imports SavedNN into the static net the first time a player is built on it, so that
+	 * every such instance plays (and trains) the same network
+	 */
+	private static synchronized FlatNetwork importNetwork(){
+		if (!imported){
 			try {
-				net = NeuralNetwork.readFrom("SavedNN");
-				System.out.println("Import of old NN successful");
+				net = loadNetwork();
 			} catch (ClassNotFoundException  e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -55,36 +127,108 @@ public class BackPropPlayer2 implements Player {
 				e.printStackTrace();
 			}
 		}
+		imported = true;
+		return net;
+	}
+
+	/*
+	 * The network to play or continue training: SavedNN if there is one, a new untrained
+	 * network otherwise. Both the shared static network and the training drivers load it here
+	 */
+	public static FlatNetwork loadNetwork() throws IOException, ClassNotFoundException{
+		if (new File("SavedNN").isFile()){
+			FlatNetwork result = FlatNetwork.readFrom("SavedNN");
+			System.out.println("Import of old NN successful");
+			return result;
+		}
+		return new FlatNetwork(196, new int[] {40, 1});
+	}
+
+	/*
+	 * The network this player evaluates and trains, null if it plays a FloatNetwork
+	 */
+	public FlatNetwork getNetwork(){
+		return network;
+	}
+
+	/*
+	 * Makes backprop accumulate its weight updates into the given arrays (laid out as
+	 * network.weights) rather than applying them, so that the network stays read-only
+	 * and the updates can be merged later. Null applies them to the network again
+	 */
+	public void setDeltas(double[][] deltas){
+		if (!(trainer instanceof TDTrainer)) throw new UnsupportedOperationException("Deltas are accumulated in double only for a FlatNetwork");
+		((TDTrainer) trainer).setUpdates(deltas);
+	}
+
+	/*
+	 * The same for a player on a FloatNetwork, whose updates are accumulated in float32
+	 * (laid out as network.weights)
+	 */
+	public void setDeltas(float[][] deltas){
+		if (!(trainer instanceof FloatTDTrainer)) throw new UnsupportedOperationException("Deltas are accumulated in float only for a FloatNetwork");
+		((FloatTDTrainer) trainer).setUpdates(deltas);
+	}
+	
+	/*
+	 * Makes this player look candidates up in the given cache before evaluating them, and
+	 * store what it evaluates. The cache may be shared by players of the same network, as
+	 * the two players of self-play score each other's positions from the same perspective.
+	 * Every training step advances the cache's version. Null evaluates everything
+	 */
+	public void setCache(EvaluationCache cache){
+		this.cache = cache;
+	}
+
+	public EvaluationCache getCache(){
+		return cache;
 	}
 	
 	public Move move(Backgammon backgammon) {
 	int thisPlayer = backgammon.getCurrentPlayer();
 	int otherPlayer = backgammon.getOtherPlayer();
 	Move bestMove = null;
-	double expectedUtility = -1.0;
-	for (Move m: backgammon.getMoves()) {
+	int best = -1;
+	/* not -1.0: with gammon outputs the utility (minus the equity) goes down to -3 */
+	double expectedUtility = Double.NEGATIVE_INFINITY;
+	/* the distinct positions this roll can reach; a Move is only built for the chosen one */
+	int positions = generator.generate(thisPlayer, backgammon.getDice(), backgammon.getCurrentBoard());
 	/*
-	* output is an array of 1-4 depending on configuration
-	*
 	* evaluate the next board for the OTHER PLAYER; you’ll
 	* have to adjust your utility accordingly...
 	*
 	* getCurrentBoard is the board AFTER the move
+	* Candidates differ from the board before the move in only a few
+	* spikes, so they are scored as deltas from it by the accumulator
+	* (whose root is only set once a candidate misses the cache)
+	*/
+	boolean rooted = false;
+	for (int i = 0; i < positions; i++) {
+	Board candidate = generator.getBoard(i);
+	/*
+	* output is an array of 1-4 depending on configuration
 	*/
-	double output[] = getValue(m.getCurrentBoard(), otherPlayer);
+	double output[] = candidateoutput;
+	if (cache == null || !cache.get(candidate.getKey(), otherPlayer, candidateoutput)) {
+	if (accumulator != null) {
+	if (!rooted) accumulator.setRoot(getInput(backgammon.getCurrentBoard(), otherPlayer, rootinput));
+	rooted = true;
+	accumulator.getValue(getInput(candidate, otherPlayer, candidateinput), candidateoutput);
+	}
+	else evaluator.getValue(getSparseInput(candidate, otherPlayer, sparseinput), candidateoutput);
+	if (cache != null) cache.put(candidate.getKey(), otherPlayer, candidateoutput);
+	}
 	double utility = Utility.computeUtility(output);
 	if (utility > expectedUtility) {
-	bestMove = m;
+	best = i;
 	expectedUtility = utility;
 	}
 	}
+	bestMove = generator.getMove(best);
 	if (learningMode) {
 	/* Nextoutput is only needed here onwards*/
-	double nextoutput [] = null;
 	/* you’ll need to pass the input values to backprop... */
-	double currentinput[] = null;
-	if (backgammon.getCurrentPlayer()==Board.BLACK) currentinput = Utility.boardToVector(bestMove.getOriginalBoard());
-	else currentinput = Utility.boardToVectorInv(bestMove.getOriginalBoard());
+	getInput(bestMove.getOriginalBoard(), thisPlayer, currentinput);
 	/* get original board is the board BEFORE the move... i.e., right now */
 	/*
 	* OH OH!!!! WARNING WARNING WARNING, DANGER WILL ROBINSON!!!
@@ -95,7 +239,10 @@ public class BackPropPlayer2 implements Player {
 	* the last call to the whole network’s getValue() which may or may not
 	* be the one you want
 	*/
-	double currentoutput[] = getValue(bestMove.getOriginalBoard(), thisPlayer);
+	/* the opponent scored this position from the same perspective, so it may be cached; backprop
+	* only reads the activations of the nextoutput pass, which is always run */
+	if (cache == null || !cache.get(bestMove.getOriginalBoard().getKey(), thisPlayer, currentoutput))
+	evaluator.getValue(getSparseInput(bestMove.getOriginalBoard(), thisPlayer, sparseinput), currentoutput);
 	/*
 	9
 	* notice, you don’t have to monkey with nextoutput even though it is
@@ -110,7 +257,7 @@ public class BackPropPlayer2 implements Player {
 	*UPDATE: After reflecting again(see the arguments at the class declaration), I believe that he was right(or not !!????!!!!, still confused)
 	*UPDATE: No, although both players see the board invariantly, the state rep for one might be different than for the other
 	*/
-	nextoutput = getValue(bestMove.getCurrentBoard(),thisPlayer);
+	evaluator.getValue(getSparseInput(bestMove.getCurrentBoard(), thisPlayer, sparseinput), nextoutput);
 	backprop(currentinput, currentoutput, nextoutput);
 		
 	}
@@ -127,16 +274,13 @@ public class BackPropPlayer2 implements Player {
 	 */
 	public void lost(Backgammon game) {
 		if (learningMode) {
-		/* assuming 1 output although the original code assumed 2 outputs */
-		double actual[] = new double[1];
 		/* For this player who is called, its always a loss for him*/
-		actual[0] = 0.0; 
+		/* with 1 output that is 0.0, with 5 it also says whether it was a gammon or backgammon */
+		Utility.getOutcome(game.getCurrentBoard(), game.getCurrentPlayer(), actual);
 		/* you’ll have to save currentBoard from the move method or something */
-		double[] in = new double[196];
-		if (game.getCurrentPlayer() == Board.BLACK)in = Utility.boardToVector(game.getCurrentBoard());
-		else in = Utility.boardToVectorInv(game.getCurrentBoard());
-		double out[] = net.getValue(in);
-		backprop(in, out, actual);
+		getInput(game.getCurrentBoard(), game.getCurrentPlayer(), currentinput);
+		evaluator.getValue(currentinput, currentoutput);
+		backprop(currentinput, currentoutput, actual);
 		}
 		}
 
@@ -149,57 +293,71 @@ public class BackPropPlayer2 implements Player {
 	 */
 	public void won(Backgammon game) {
 		if (learningMode) {
-		/* assuming 1 output although the original code assumed 2 outputs */
-		double actual[] = new double[1];
 		/* For this player who is called, its always a win for him*/
-		actual[0] = 1.0; 
+		/* with 1 output that is 1.0, with 5 it also says whether it was a gammon or backgammon */
+		Utility.getOutcome(game.getCurrentBoard(), game.getOtherPlayer(), actual);
 		/* you’ll have to save currentBoard from the move method or something */
-		double[] in = new double[196];
-		if (game.getOtherPlayer() == Board.BLACK)in = Utility.boardToVector(game.getCurrentBoard());
-		else in = Utility.boardToVectorInv(game.getCurrentBoard());
-		double out[] = net.getValue(in);
-		backprop(in, out, actual);
+		getInput(game.getCurrentBoard(), game.getOtherPlayer(), currentinput);
+		evaluator.getValue(currentinput, currentoutput);
+		backprop(currentinput, currentoutput, actual);
 		}
 		}
 
 
 		//NN training is done here, sice this is not a general backprop algorithm
-		public static double gradient(HiddenUnit u) {
-		return u.getValue() * (1.0 - u.getValue());
-		}
-		/* Ew and Ev must be set up somewhere to the proper size and set to 0 */
+		/*
+		 * One TD(lambda) step, on the activations of the network's last evaluation, for any
+		 * number of layers and outputs (see TDTrainer and FloatTDTrainer)
+		 */
 		public void backprop(double[] in, double[] out, double[] expected) {
-		/* compute eligibility traces */
-		for (int j = 0; j < net.hidden[0].length; j++)
-		for (int k = 0; k < out.length; k++) {
-		/* ew[j][k] = (lambda * ew[j][k]) + (gradient(k)*hidden_j) */
-		Ew[j][k] = (LAMBDA * Ew[j][k]) + (gradient(net.hidden[1][k]) * net.hidden[0][j].getValue());
-		for (int i = 0; i < in.length; i++)
-		/* ev[i][j][k] = (lambda * ev[i][j][k]) + (gradient(k)+w[j][k]+gradient(j)+input_i)*/
-		Ev[i][j][k] = ( ( LAMBDA * Ev[i][j][k] ) + ( gradient(net.hidden[1][k]) * net.hidden[1][k].weights[j] * gradient(net.hidden[0][j])* in[i]));
-		}
-		double error[] = new double[out.length];
-		for (int k =0; k < out.length; k++)
-		error[k] = expected[k] - out[k];
-		for (int j = 0; j < net.hidden[0].length; j++)
-		for (int k = 0; k < out.length; k++) {
-		/* weight from j to k, shown with learning param of BETA */
-		net.hidden[1][k].weights[j] += BETA * error[k] * Ew[j][k];
-		for (int i = 0; i < in.length; i ++) {
-		net.hidden[0][j].weights[i] += ALPHA * error[k] * Ev[i][j][k];
-		}
-		}
+		if (trainer == null) throw new UnsupportedOperationException("This player only plays");
+		trainer.train(in, out, expected);
+		if (cache != null) cache.advance();
 		}
 		
+		/*
+		 * Allocates the output buffers for the number of outputs of the network
+		 */
+		private void allocateOutputs(){
+			int outputs = evaluator.getOutputs();
+			candidateoutput = new double[outputs];
+			currentoutput = new double[outputs];
+			nextoutput = new double[outputs];
+			actual = new double[outputs];
+		}
+
 		/*
 		 * The line in this function player==BLAC, defines here we choose to train
 		 * the NN from whose perspective: Black or White, here each player thinks
 		 * he is a black player
 		 */
 		public static double[] getValue(Board board,int player){
+			return net.getValue(getSparseInput(board, player, new SparseInput(net.getInputs())));
+		}
+
+		/*
+		 * The NN input for the board, seen from the given player's perspective
+		 */
+		public static double[] getInput(Board board,int player){
+			return getInput(board, player, new double[196]);
+		}
+
+		/*
+		 * Same as getInput, but written into the given (reusable) buffer
+		 */
+		public static double[] getInput(Board board,int player,double[] input){
+			if (player == Board.BLACK)
+			return Utility.boardToVector(board, input);
+			else return Utility.boardToVectorInv(board, input);
+		}
+
+		/*
+		 * Same as getInput, but only the non-zero units, written into the given input
+		 */
+		public static SparseInput getSparseInput(Board board,int player,SparseInput input){
 			if (player == Board.BLACK)
-			return net.getValue(Utility.boardToVector(board) );
-			else return net.getValue(Utility.boardToVectorInv(board));
+			return Utility.boardToSparse(board, input);
+			else return Utility.boardToSparseInv(board, input);
 		}
 
 		
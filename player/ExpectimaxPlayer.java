@@ -0,0 +1,646 @@
+package player;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import board.*;
+import game.Backgammon;
+import move.*;
+import net.*;
+
+/**
+ * A player which looks two or more plies ahead.  The candidates of the
+ * roll are first scored as BackPropPlayer2 scores them, by the network's
+ * value of the position the opponent is left with.  A MoveFilter narrows
+ * them down, and the survivors are then scored again by averaging, over
+ * the 21 distinct rolls of the opponent (each double weighing 1/36 and
+ * every other roll 2/36), the value of the reply which is best for the
+ * opponent.  At 3 plies a second filter narrows the survivors down again
+ * before they are scored at the full depth, and the candidate with the
+ * best score at the deepest ply is played.
+ *
+ * At 2 plies the value of a reply is the network's.  At 3 plies the
+ * opponent's reply to each roll is the best by the network, and its
+ * value is in turn averaged over this player's 21 rolls, this player
+ * always answering with its best move by the network.
+ *
+ * The positions of one chance node differ from the position they are
+ * played from in only a few spikes, so they are evaluated incrementally
+ * from it by an Accumulator, and an EvaluationCache set with setCache is
+ * consulted first.  All values are cubeless equities from the point of
+ * view of the player to move, so that 1 and 5 output networks are
+ * searched alike.
+ *
+ * With a ForkJoinPool set by setPool, the 21 branches of the chance node
+ * of each candidate are searched as separate tasks, which idle workers
+ * steal.  Every thread searches with its own Search, holding its own
+ * move generators, accumulators and buffers over a shared copy of the
+ * weights, so no locks are taken while searching, and the results are
+ * the same as on one thread (unless a cache is shared, whose values may
+ * differ from a fresh evaluation in the last bits).
+ *
+ * Every few moves (see setAudit) the search may also score every
+ * candidate at the full depth, to count how often the move it would
+ * have played was pruned by the filters, and what that cost.
+ *
+ * This player only plays; it never trains its network.
+ */
+public class ExpectimaxPlayer implements Player {
+
+  // the number of candidates kept for each deeper ply by default
+  public static final int DEFAULT_CANDIDATES = 4;
+
+  // the number of plies searched by default, and the most allowed
+  public static final int DEFAULT_PLIES = 2;
+  public static final int MAX_PLIES = 3;
+
+  // the distinct rolls
+  protected static final Dice[] ROLLS = Dice.getRolls();
+
+  // the network searched with
+  protected FlatNetwork net;
+
+  // the number of plies, and the filter before each ply beyond the first
+  protected int plies;
+  protected MoveFilter[] filters;
+
+  // the cache consulted before evaluating, if any
+  protected EvaluationCache cache;
+
+  // the pool the chance nodes are searched on, or null to search on the calling thread
+  protected ForkJoinPool pool;
+
+  // the search state of each thread
+  protected ThreadLocal<Search> searches = ThreadLocal.withInitial(() -> new Search());
+
+  // the scores of this roll's candidates, at the deepest ply they were searched
+  protected double[] scores = new double[0];
+
+  // the indices of this roll's candidates, the survivors of the last filter first
+  protected int[] selected = new int[0];
+
+  // the number of moves made and of positions evaluated while searching
+  protected long moves;
+  protected LongAdder evaluations = new LongAdder();
+
+  // the number of moves the deeper plies changed from the best at 1 ply
+  protected long changed;
+
+  // every how many moves an audit is made (0 for never), the number of
+  // audits, of audited moves whose best was pruned and the total equity
+  // those lost, and the positions the audits evaluated
+  protected int audit;
+  protected long audits;
+  protected long pruned;
+  protected double loss;
+  protected LongAdder audited = new LongAdder();
+
+  /**
+   * The state of the search on one thread: a move generator, an
+   * accumulator and buffers for each ply, over its own view of the
+   * network.
+   */
+  protected class Search {
+
+    // the network, with this thread's activations
+    protected FlatNetwork net = ExpectimaxPlayer.this.net.share();
+
+    // the moves generated at each ply, and the evaluator of each ply
+    protected MoveGenerator[] generators = new MoveGenerator[plies];
+    protected Accumulator[] accumulators = new Accumulator[plies];
+
+    // the key and perspective of the root of each accumulator, -1 if none
+    protected long[] roots = new long[plies];
+    protected int[] perspectives = new int[plies];
+
+    // reusable buffers
+    protected double[] input = new double[net.getInputs()];
+    protected double[] output = new double[net.getOutputs()];
+
+    // the number of positions this thread has evaluated
+    protected long evaluations;
+
+    protected Search() {
+      for (int l=0; l<plies; l++) {
+        generators[l] = new MoveGenerator();
+        accumulators[l] = new Accumulator(net);
+        perspectives[l] = -1;
+      }
+    }
+
+    /**
+     * Makes the given position, from the given perspective, the root
+     * of the accumulator of the given ply, unless it already is.
+     *
+     * @param ply The ply
+     * @param board The position
+     * @param perspective The perspective
+     */
+    protected void root(int ply, Board board, int perspective) {
+      if (perspectives[ply] == perspective && roots[ply] == board.getKey())
+        return;
+
+      accumulators[ply].setRoot(BackPropPlayer2.getInput(board, perspective, input));
+      roots[ply] = board.getKey();
+      perspectives[ply] = perspective;
+    }
+
+    /**
+     * Returns the equity of the given position for the given player,
+     * who is to move in it.  A position which is not over is evaluated
+     * incrementally from the root of the ply's accumulator (set from
+     * the same perspective), unless it is cached.
+     *
+     * @param ply The ply
+     * @param board The position
+     * @param player The player to move
+     * @return The equity for that player
+     */
+    protected double evaluate(int ply, Board board, int player) {
+      evaluations++;
+
+      if (board.isGameOver())
+        return Utility.computeEquity(Utility.getOutcome(board, player, output));
+
+      if (cache == null || ! cache.get(board.getKey(), player, output)) {
+        accumulators[ply].getValue(BackPropPlayer2.getInput(board, player, input), output);
+
+        if (cache != null)
+          cache.put(board.getKey(), player, output);
+      }
+
+      return Utility.computeEquity(output);
+    }
+
+    /**
+     * Returns the equity of the given position after the player's
+     * move, for the player, averaged over the opponent's rolls.
+     *
+     * @param board The position after the player's move
+     * @param player The player
+     * @param depth The plies left to search, at least 2
+     * @param ply The ply of the opponent's replies
+     * @return The expected equity
+     */
+    protected double expectation(Board board, int player, int depth, int ply) {
+      if (board.isGameOver())
+        return Utility.computeEquity(Utility.getOutcome(board, player, output));
+
+      double total = 0;
+
+      for (Dice dice : ROLLS)
+        total += dice.getWeight() * branch(board, player, dice, depth, ply);
+
+      return total / 36;
+    }
+
+    /**
+     * Returns the equity of the given position after the player's
+     * move, which is not over, for the player, once the opponent has
+     * played its best reply to the given roll.
+     *
+     * @param board The position after the player's move
+     * @param player The player
+     * @param dice The opponent's roll
+     * @param depth The plies left to search, at least 2
+     * @param ply The ply of the opponent's replies
+     * @return The equity
+     */
+    protected double branch(Board board, int player, Dice dice, int depth, int ply) {
+      int other = Board.getOtherPlayer(player);
+      MoveGenerator replies = generators[ply];
+      int positions = replies.generate(other, dice, board);
+      double worst = Double.POSITIVE_INFINITY;
+      int reply = 0;
+
+      // the replies are scored from the player's point of view, from the position
+      root(ply, board, player);
+
+      for (int i=0; i<positions; i++) {
+        double equity = evaluate(ply, replies.getBoard(i), player);
+
+        if (equity < worst) {
+          worst = equity;
+          reply = i;
+        }
+      }
+
+      if (depth == 2)
+        return worst;
+
+      return -expectation(replies.getBoard(reply), other, depth - 1, ply + 1);
+    }
+  }
+
+  /**
+   * The search of one branch of the chance node of a candidate.
+   */
+  protected class Branch extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    // the candidate, its player, the opponent's roll and the plies searched
+    protected Board board;
+    protected int player;
+    protected Dice dice;
+    protected int depth;
+
+    // where to write the value, and to count the evaluations
+    protected double[] values;
+    protected int index;
+    protected LongAdder counter;
+
+    protected Branch(Board board, int player, Dice dice, int depth, double[] values, int index, LongAdder counter) {
+      this.board = board;
+      this.player = player;
+      this.dice = dice;
+      this.depth = depth;
+      this.values = values;
+      this.index = index;
+      this.counter = counter;
+    }
+
+    protected void compute() {
+      Search search = searches.get();
+      long start = search.evaluations;
+
+      values[index] = search.branch(board, player, dice, depth, 1);
+      counter.add(search.evaluations - start);
+    }
+  }
+
+  /**
+   * Builds a player searching the default number of candidates with
+   * the given network, which it only reads.
+   *
+   * @param net The network
+   */
+  public ExpectimaxPlayer(FlatNetwork net) {
+    this(net, DEFAULT_CANDIDATES);
+  }
+
+  /**
+   * Builds a player searching the given number of candidates at two
+   * plies with the given network.
+   *
+   * @param net The network
+   * @param candidates The number of candidates searched at two plies
+   */
+  public ExpectimaxPlayer(FlatNetwork net, int candidates) {
+    this(net, candidates, DEFAULT_PLIES);
+  }
+
+  /**
+   * Builds a player searching the given number of best candidates at
+   * each ply beyond the first, to the given number of plies, with the
+   * given network.
+   *
+   * @param net The network
+   * @param candidates The number of candidates searched at each deeper ply
+   * @param plies The number of plies, from 1 to MAX_PLIES
+   */
+  public ExpectimaxPlayer(FlatNetwork net, int candidates, int plies) {
+    if (plies < 1 || plies > MAX_PLIES)
+      throw new IllegalArgumentException("From 1 to " + MAX_PLIES + " plies are searched, not " + plies);
+
+    this.net = net;
+    this.plies = plies;
+    this.filters = new MoveFilter[plies - 1];
+
+    for (int f=0; f<filters.length; f++)
+      filters[f] = new MoveFilter(candidates);
+  }
+
+  /**
+   * Builds a player searching the default number of candidates at the
+   * given number of plies with the network in the given file, on a
+   * pool of the given number of threads, for live play.
+   *
+   * @param filename The network file
+   * @param plies The number of plies
+   * @param threads The number of threads, 1 to search on the thread calling move
+   * @return The player
+   */
+  public static ExpectimaxPlayer readFrom(String filename, int plies, int threads) throws IOException, ClassNotFoundException {
+    ExpectimaxPlayer player = new ExpectimaxPlayer(FlatNetwork.readFrom(filename), DEFAULT_CANDIDATES, plies);
+
+    if (threads > 1)
+      player.setPool(new ForkJoinPool(threads));
+
+    return player;
+  }
+
+  /**
+   * Returns the network this player searches with
+   *
+   * @return The network
+   */
+  public FlatNetwork getNetwork() {
+    return net;
+  }
+
+  /**
+   * Returns the filters of the candidates, the first applied to their
+   * 1-ply scores and each further one to the scores of the ply before
+   *
+   * @return The filters, one fewer than the plies
+   */
+  public MoveFilter[] getFilters() {
+    return filters;
+  }
+
+  /**
+   * Sets the filters of the candidates, one for each ply beyond the
+   * first, the first filter choosing the candidates searched at 2
+   * plies from their 1-ply scores, and so on.
+   *
+   * @param filters The filters, one fewer than the plies
+   */
+  public void setFilters(MoveFilter... filters) {
+    if (filters.length != plies - 1)
+      throw new IllegalArgumentException((plies - 1) + " filters are needed for " + plies + " plies, not " + filters.length);
+
+    this.filters = filters;
+  }
+
+  /**
+   * Returns the number of plies searched
+   *
+   * @return The number of plies
+   */
+  public int getPlies() {
+    return plies;
+  }
+
+  /**
+   * Makes this player look positions up in the given cache before
+   * evaluating them, and store what it evaluates.  The cache may be
+   * shared with other players of the same network.
+   *
+   * @param cache The cache, or null to evaluate everything
+   */
+  public void setCache(EvaluationCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the cache this player uses
+   *
+   * @return The cache, or null
+   */
+  public EvaluationCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Makes this player search the chance nodes of its candidates on
+   * the given pool.
+   *
+   * @param pool The pool, or null to search on the thread calling move
+   */
+  public void setPool(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Returns the pool this player searches on
+   *
+   * @return The pool, or null
+   */
+  public ForkJoinPool getPool() {
+    return pool;
+  }
+
+  /**
+   * Makes this player audit its filters every given number of moves,
+   * by also searching every candidate at the full depth.  Audits are
+   * expensive, and are not counted in getEvaluations.
+   *
+   * @param audit Every how many moves to audit, 0 never to
+   */
+  public void setAudit(int audit) {
+    this.audit = audit;
+  }
+
+  /**
+   * Returns the number of moves the deeper plies changed from the
+   * best one at 1 ply
+   *
+   * @return The changed moves
+   */
+  public long getChanged() {
+    return changed;
+  }
+
+  /**
+   * Returns the number of audits made
+   *
+   * @return The audits
+   */
+  public long getAudits() {
+    return audits;
+  }
+
+  /**
+   * Returns the number of audited moves whose best candidate at the
+   * full depth was pruned by a filter
+   *
+   * @return The pruned moves
+   */
+  public long getPruned() {
+    return pruned;
+  }
+
+  /**
+   * Returns the total equity, at the full depth, which the pruned
+   * audited moves lost against the best candidate
+   *
+   * @return The equity lost
+   */
+  public double getLoss() {
+    return loss;
+  }
+
+  /**
+   * Returns the number of moves this player has made
+   *
+   * @return The moves
+   */
+  public long getMoves() {
+    return moves;
+  }
+
+  /**
+   * Returns the number of positions this player has evaluated (or
+   * found in its cache) while choosing its moves
+   *
+   * @return The evaluations
+   */
+  public long getEvaluations() {
+    return evaluations.sum();
+  }
+
+  /**
+   * Returns the equity of the given position after the player's move,
+   * for the player, averaged over the opponent's rolls and searched to
+   * the given depth on this thread, as move() scores its candidates.
+   *
+   * @param board The position after the player's move
+   * @param player The player
+   * @param depth The plies to search, from 2 to getPlies()
+   * @return The expected equity
+   */
+  public double getExpectation(Board board, int player, int depth) {
+    if (depth < 2 || depth > plies)
+      throw new IllegalArgumentException("The depth must be from 2 to " + plies + ", not " + depth);
+
+    return searches.get().expectation(board, player, depth, 1);
+  }
+
+  public Move move(Backgammon backgammon) {
+    int player = backgammon.getCurrentPlayer();
+    int other = Board.getOtherPlayer(player);
+    Search search = searches.get();
+    MoveGenerator generator = search.generators[0];
+    int positions = generator.generate(player, backgammon.getDice(), backgammon.getCurrentBoard());
+    long start = search.evaluations;
+
+    moves++;
+
+    if (positions == 1)
+      return generator.getMove(0);
+
+    if (scores.length < positions) {
+      scores = new double[positions];
+      selected = new int[positions];
+    }
+
+    // 1 ply: the candidates are scored from the opponent's point of view, from the board before the move
+    search.root(0, backgammon.getCurrentBoard(), other);
+
+    for (int i=0; i<positions; i++) {
+      scores[i] = -search.evaluate(0, generator.getBoard(i), other);
+      selected[i] = i;
+    }
+
+    evaluations.add(search.evaluations - start);
+
+    // each filter orders the candidates by their last scores, and the survivors are scored a ply deeper
+    int count = positions;
+    int first = -1;
+
+    for (int depth=2; depth<=plies && count > 1; depth++) {
+      count = filters[depth - 2].filter(selected, count, scores);
+
+      if (first < 0)
+        first = selected[0];
+
+      if (count > 1) {
+        double[] values = search(generator, selected, count, player, depth, evaluations);
+
+        for (int s=0; s<count; s++)
+          scores[selected[s]] = values[s];
+      }
+    }
+
+    // the best survivor, ties going to the one which was better at the ply before
+    int best = selected[0];
+
+    for (int s=1; s<count; s++)
+      if (scores[selected[s]] > scores[best])
+        best = selected[s];
+
+    if (first >= 0 && best != first)
+      changed++;
+
+    if (audit > 0 && plies > 1 && moves % audit == 0)
+      audit(generator, positions, player, best);
+
+    return generator.getMove(best);
+  }
+
+  /**
+   * Searches every candidate at the full depth, and records whether
+   * the best of them was the one chosen, and if not what it lost.
+   *
+   * @param generator The generator of the candidates
+   * @param positions The number of candidates
+   * @param player The player to move
+   * @param chosen The candidate chosen
+   */
+  protected void audit(MoveGenerator generator, int positions, int player, int chosen) {
+    int[] all = new int[positions];
+
+    for (int i=0; i<positions; i++)
+      all[i] = i;
+
+    double[] values = search(generator, all, positions, player, plies, audited);
+    double best = values[chosen];
+
+    for (int i=0; i<positions; i++)
+      best = Math.max(best, values[i]);
+
+    audits++;
+
+    if (best > values[chosen]) {
+      pruned++;
+      loss += best - values[chosen];
+    }
+  }
+
+  /**
+   * Returns the values of the given candidates, searched to the given
+   * depth, on the pool if there is one.
+   *
+   * @param generator The generator of the candidates
+   * @param candidates The indices of the candidates
+   * @param count The number of candidates
+   * @param player The player to move
+   * @param depth The plies searched, at least 2
+   * @param counter Where to count the evaluations
+   * @return The value of each candidate, in the order of candidates
+   */
+  protected double[] search(MoveGenerator generator, int[] candidates, int count, int player, int depth, LongAdder counter) {
+    double[] branches = new double[count * ROLLS.length];
+    double[] values = new double[count];
+    List<Branch> tasks = new ArrayList<Branch>();
+
+    for (int s=0; s<count; s++) {
+      Board board = generator.getBoard(candidates[s]);
+
+      if (board.isGameOver())
+        values[s] = Utility.computeEquity(Utility.getOutcome(board, player, new double[net.getOutputs()]));
+      else
+        for (int r=0; r<ROLLS.length; r++)
+          tasks.add(new Branch(board, player, ROLLS[r], depth, branches, s * ROLLS.length + r, counter));
+    }
+
+    if (pool == null) {
+      for (Branch task : tasks)
+        task.compute();
+    } else {
+      pool.invoke(ForkJoinTask.adapt(() -> { ForkJoinTask.invokeAll(tasks); }));
+    }
+
+    // summed in the order of the rolls, wherever they were searched
+    for (int s=0; s<count; s++) {
+      if (generator.getBoard(candidates[s]).isGameOver())
+        continue;
+
+      double total = 0;
+
+      for (int r=0; r<ROLLS.length; r++)
+        total += ROLLS[r].getWeight() * branches[s * ROLLS.length + r];
+
+      values[s] = total / 36;
+    }
+
+    return values;
+  }
+
+  public void won(Backgammon game) {}
+
+  public void lost(Backgammon game) {}
+}
@@ -0,0 +1,153 @@
+package player;
+
+/**
+ * One stage of the narrowing of a roll's candidates before they are
+ * searched deeper.  Given the candidates' scores at some depth, a filter
+ * keeps the best few of them, and any others whose score is within a
+ * threshold of the best one's, up to a limit; only those are scored at
+ * the next depth.  A filter also counts how many candidates it was
+ * given and kept, over all of its uses.
+ */
+public class MoveFilter {
+
+  // the number of candidates always kept
+  protected int keep;
+
+  // how far below the best score (in equity) a candidate may be and still be kept
+  protected double threshold;
+
+  // the most candidates kept
+  protected int limit;
+
+  // the number of times this filter was used, and of candidates given and kept
+  protected long filtered;
+  protected long given;
+  protected long kept;
+
+  /**
+   * Builds a filter keeping only the given number of best candidates
+   *
+   * @param keep The number of candidates kept
+   */
+  public MoveFilter(int keep) {
+    this(keep, 0, keep);
+  }
+
+  /**
+   * Builds a filter keeping the given number of best candidates, and
+   * those within threshold of the best one, but never more than limit.
+   *
+   * @param keep The number of candidates always kept
+   * @param threshold The equity below the best score within which more are kept
+   * @param limit The most candidates kept
+   */
+  public MoveFilter(int keep, double threshold, int limit) {
+    if (keep < 1)
+      throw new IllegalArgumentException("At least one candidate must be kept, not " + keep);
+    if (threshold < 0)
+      throw new IllegalArgumentException("The threshold must not be negative, not " + threshold);
+    if (limit < keep)
+      throw new IllegalArgumentException("The limit (" + limit + ") must not be below the candidates kept (" + keep + ")");
+
+    this.keep = keep;
+    this.threshold = threshold;
+    this.limit = limit;
+  }
+
+  /**
+   * Returns the number of candidates always kept
+   *
+   * @return The candidates kept
+   */
+  public int getKeep() {
+    return keep;
+  }
+
+  /**
+   * Returns how far below the best score a candidate may be and still
+   * be kept
+   *
+   * @return The threshold
+   */
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Returns the most candidates kept
+   *
+   * @return The limit
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Orders the first count candidates from the best score to the
+   * worst (candidates with equal scores staying in the order they were
+   * given), and returns how many of them are kept.
+   *
+   * @param candidates The indices of the candidates
+   * @param count The number of candidates
+   * @param scores The score of each candidate, by index
+   * @return The number of candidates kept, at the front of candidates
+   */
+  public int filter(int[] candidates, int count, double[] scores) {
+    // an insertion sort, which is stable and quick on the few candidates of most rolls
+    for (int i=1; i<count; i++) {
+      int candidate = candidates[i];
+      int j = i;
+
+      for (; j > 0 && scores[candidates[j-1]] < scores[candidate]; j--)
+        candidates[j] = candidates[j-1];
+
+      candidates[j] = candidate;
+    }
+
+    int result = Math.min(keep, count);
+    double floor = scores[candidates[0]] - threshold;
+
+    while (result < Math.min(limit, count) && scores[candidates[result]] >= floor)
+      result++;
+
+    filtered++;
+    given += count;
+    kept += result;
+
+    return result;
+  }
+
+  /**
+   * Returns the number of times this filter was used
+   *
+   * @return The filterings
+   */
+  public long getFiltered() {
+    return filtered;
+  }
+
+  /**
+   * Returns the number of candidates this filter was given
+   *
+   * @return The candidates given
+   */
+  public long getGiven() {
+    return given;
+  }
+
+  /**
+   * Returns the number of candidates this filter kept
+   *
+   * @return The candidates kept
+   */
+  public long getKept() {
+    return kept;
+  }
+
+  public String toString() {
+    long n = Math.max(1, filtered);
+
+    return String.format("top %d and within %.3f up to %d: kept %.1f of %.1f candidates on average, over %,d rolls",
+                         keep, threshold, limit, (double) kept / n, (double) given / n, filtered);
+  }
+}
@@ -13,7 +13,24 @@ import move.Move;
 public class RandomPlayer implements Player {
   
   // the random move selector
-  protected Random random = new Random();
+  protected Random random;
+  
+  /**
+   * Builds a random player with an arbitrary seed
+   */
+  public RandomPlayer() {
+    this.random = new Random();
+  }
+  
+  /**
+   * Builds a random player which always makes the same choices
+   * for the same seed (and the same games).
+   *
+   * @param seed The seed of the move selector
+   */
+  public RandomPlayer(long seed) {
+    this.random = new Random(seed);
+  }
   
   /**
    * Requests that the player make a move using the given
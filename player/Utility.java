@@ -2,14 +2,52 @@ package player;
 
 import board.Board;
 import move.IllegalMoveException;
+import net.SparseInput;
 
 public class Utility {
 	/*
 	 * Return the negative of output[0] because in minimax game, goal is to minimize
-	 * otherplayer's utility
+	 * otherplayer's utility. With the five outputs of getOutcome, minimize the otherplayer's equity
 	 */
 	public static double computeUtility(double[] output){
-		return -output[0];	
+		if (output.length == 1) return -output[0];
+		return -computeEquity(output);
+	}
+
+	/*
+	 * The cubeless equity, in points per game, of the player whose perspective the net saw:
+	 * 1 output is P(win), 5 outputs are P(win), P(win gammon), P(win backgammon),
+	 * P(lose gammon), P(lose backgammon), each gammon including the backgammons
+	 */
+	public static double computeEquity(double[] output){
+		double equity = 2*output[0] - 1;
+		if (output.length == 5)
+			equity += output[1] + output[2] - output[3] - output[4];
+		return equity;
+	}
+
+	/*
+	 * The net's target once the game on this board is over, from the given player's perspective,
+	 * in the layout of computeEquity: [won] for 1 output, and for 5 outputs
+	 * [won, won gammon, won backgammon, lost gammon, lost backgammon]
+	 */
+	public static double[] getOutcome(Board board, int player, double[] result){
+		int winner = board.getWinner();
+		int loser = Board.getOtherPlayer(winner);
+		result[0] = (winner == player) ? 1.0 : 0.0;
+		if (result.length == 5) {
+			/* gammon: the loser has borne off nothing; backgammon: and still has a piece
+			 * on the bar or in the winner's home board */
+			boolean gammon = board.getOff(loser) == 0;
+			boolean backgammon = gammon && board.getBar(loser) > 0;
+			for (int i = 0; i < Board.NUM_SPIKES; i++)
+				if (board.getPieces(loser, i) > 0 && Board.inHomeQuadrant(i, winner)) backgammon = gammon;
+			result[1] = (winner == player && gammon) ? 1.0 : 0.0;
+			result[2] = (winner == player && backgammon) ? 1.0 : 0.0;
+			result[3] = (winner != player && gammon) ? 1.0 : 0.0;
+			result[4] = (winner != player && backgammon) ? 1.0 : 0.0;
+		}
+		return result;
 	}
 	public static Board createInverseBoard(Board board){
 	//Data-structures, because I don't want to create getters,setters for creating an inverse board
@@ -44,76 +82,30 @@ public class Utility {
 	 * hence only 196 input units
 	 */
 	public static double[] boardToVector(Board board){
-		double[] input = new double[196];
-		
-		//Doing for each of 4 units of White Pieces each at 24 spikes
-		int counter=0;
-		int white_pieces;
-		for (int i=0;i < Board.NUM_SPIKES;i++){
-			white_pieces = board.getWhitePieces(i);
-			if (white_pieces == 0){
-				for (int j=0;j<4;j++){
-					input[counter]=0;
-					counter+=1;
-				}
-			}
-			else if (white_pieces==1){
-				input[counter]=1;
-				counter+=4;
-			}
-			else if (white_pieces==2){
-				input[counter]=1;
-				input[counter+1]=1;
-				counter+=4;
-			}
-			else if (white_pieces>=3){
-				for (int j=0;j<3;j++){
-					input[counter]=1;
-					counter+=1;
-				}
-				input[counter]= (white_pieces - 3.0)/2.0;
-				counter+=1;
-			}
+		return boardToVector(board, new double[196]);
+	}
+
+	/*
+	 * Same as boardToVector, but writes into the given (reusable) 196 unit buffer
+	 * instead of allocating one per call
+	 */
+	public static double[] boardToVector(Board board, double[] input){
+		if (input.length!=196){
+			throw new IllegalMoveException("Board to NN input not working properly");
 		}
-		
+		//Doing for each of 4 units of White Pieces each at 24 spikes
+		for (int i=0;i < Board.NUM_SPIKES;i++)
+			setSpike(input, 4*i, board.getWhitePieces(i));
+
 		//Doing for the last 4 units
-		input[counter]=board.getBlackBar()/2.0;
-		input[counter+1]=board.getWhiteBar()/2.0;
-		input[counter+2]=board.getBlackOff()/15.0;
-		input[counter+3]=board.getWhiteOff()/15.0;
-		counter+=4;
-		
+		input[96]=board.getBlackBar()/2.0;
+		input[97]=board.getWhiteBar()/2.0;
+		input[98]=board.getBlackOff()/15.0;
+		input[99]=board.getWhiteOff()/15.0;
+
 		//Doing for each of 4 units of Black Pieces each at 24 spikes
-		white_pieces=0;
-		for (int i=0;i < Board.NUM_SPIKES;i++){
-			white_pieces = board.getBlackPieces(i); //Variable name is white piece but it is indeed black
-			if (white_pieces == 0){
-				for (int j=0;j<4;j++){
-					input[counter]=0;
-					counter+=1;
-				}
-			}
-			else if (white_pieces==1){
-				input[counter]=1;
-				counter+=4;
-			}
-			else if (white_pieces==2){
-				input[counter]=1;
-				input[counter+1]=1;
-				counter+=4;
-			}
-			else if (white_pieces>=3){
-				for (int j=0;j<3;j++){
-					input[counter]=1;
-					counter+=1;
-				}
-				input[counter]= (white_pieces - 3.0)/2.0;
-				counter+=1;
-			}
-		}
-		if (counter!=196){
-			throw new IllegalMoveException("Board to NN input not working properly");
-		}
+		for (int i=0;i < Board.NUM_SPIKES;i++)
+			setSpike(input, 100 + 4*i, board.getBlackPieces(i));
 		return input;
 	}
 	
@@ -122,74 +114,84 @@ public class Utility {
 	 * Creates BoardtoVec for opponent, better than inverting the board's internal representation each time
 	 */
 	public static double[] boardToVectorInv(Board board){
-		double[] input = new double[196];
-		int counter=0;
-		int white_pieces;
-		for (int i=Board.NUM_SPIKES-1;i > -1 ;i--){
-			white_pieces = board.getBlackPieces(i);
-			if (white_pieces == 0){
-				for (int j=0;j<4;j++){
-					input[counter]=0;
-					counter+=1;
-				}
-			}
-			else if (white_pieces==1){
-				input[counter]=1;
-				counter+=4;
-			}
-			else if (white_pieces==2){
-				input[counter]=1;
-				input[counter+1]=1;
-				counter+=4;
-			}
-			else if (white_pieces>=3){
-				for (int j=0;j<3;j++){
-					input[counter]=1;
-					counter+=1;
-				}
-				input[counter]= (white_pieces - 3.0)/2.0;
-				counter+=1;
-			}
-		}
-		input[counter]=board.getWhiteBar()/2.0;
-		input[counter+1]=board.getBlackBar()/2.0;
-		input[counter+2]=board.getWhiteOff()/15.0;
-		input[counter+3]=board.getBlackOff()/15.0;
-		counter+=4;
-		
-		//Remaining color pieces
-		white_pieces=0;
-		for (int i=Board.NUM_SPIKES-1;i > -1 ;i--){
-			white_pieces = board.getWhitePieces(i);
-			if (white_pieces == 0){
-				for (int j=0;j<4;j++){
-					input[counter]=0;
-					counter+=1;
-				}
-			}
-			else if (white_pieces==1){
-				input[counter]=1;
-				counter+=4;
-			}
-			else if (white_pieces==2){
-				input[counter]=1;
-				input[counter+1]=1;
-				counter+=4;
-			}
-			else if (white_pieces>=3){
-				for (int j=0;j<3;j++){
-					input[counter]=1;
-					counter+=1;
-				}
-				input[counter]= (white_pieces - 3.0)/2.0;
-				counter+=1;
-			}
-		}
+		return boardToVectorInv(board, new double[196]);
+	}
 
-		if (counter!=196){
+	/*
+	 * Same as boardToVectorInv, but writes into the given (reusable) 196 unit buffer
+	 */
+	public static double[] boardToVectorInv(Board board, double[] input){
+		if (input.length!=196){
 			throw new IllegalMoveException("Board to NN input not working properly");
 		}
+		for (int i=0;i < Board.NUM_SPIKES;i++)
+			setSpike(input, 4*i, board.getBlackPieces(Board.NUM_SPIKES-1-i));
+
+		input[96]=board.getWhiteBar()/2.0;
+		input[97]=board.getBlackBar()/2.0;
+		input[98]=board.getWhiteOff()/15.0;
+		input[99]=board.getBlackOff()/15.0;
+
+		//Remaining color pieces
+		for (int i=0;i < Board.NUM_SPIKES;i++)
+			setSpike(input, 100 + 4*i, board.getWhitePieces(Board.NUM_SPIKES-1-i));
+		return input;
+	}
+
+	/*
+	 * Writes all four units of one spike holding the given number of pieces
+	 * (the buffer may hold an older board, so zeros are written too)
+	 */
+	private static void setSpike(double[] input, int counter, int pieces){
+		input[counter] = (pieces >= 1) ? 1 : 0;
+		input[counter+1] = (pieces >= 2) ? 1 : 0;
+		input[counter+2] = (pieces >= 3) ? 1 : 0;
+		input[counter+3] = (pieces >= 3) ? (pieces - 3.0)/2.0 : 0;
+	}
+
+	/*
+	 * Same encoding as boardToVector, but only the non-zero units are written,
+	 * typically 30-40 of the 196
+	 */
+	public static SparseInput boardToSparse(Board board, SparseInput input){
+		input.clear();
+		for (int i=0;i < Board.NUM_SPIKES;i++)
+			addSpike(input, 4*i, board.getWhitePieces(i));
+		input.add(96, board.getBlackBar()/2.0);
+		input.add(97, board.getWhiteBar()/2.0);
+		input.add(98, board.getBlackOff()/15.0);
+		input.add(99, board.getWhiteOff()/15.0);
+		for (int i=0;i < Board.NUM_SPIKES;i++)
+			addSpike(input, 100 + 4*i, board.getBlackPieces(i));
+		return input;
+	}
+
+	/*
+	 * Same encoding as boardToVectorInv, but only the non-zero units are written
+	 */
+	public static SparseInput boardToSparseInv(Board board, SparseInput input){
+		input.clear();
+		for (int i=0;i < Board.NUM_SPIKES;i++)
+			addSpike(input, 4*i, board.getBlackPieces(Board.NUM_SPIKES-1-i));
+		input.add(96, board.getWhiteBar()/2.0);
+		input.add(97, board.getBlackBar()/2.0);
+		input.add(98, board.getWhiteOff()/15.0);
+		input.add(99, board.getBlackOff()/15.0);
+		for (int i=0;i < Board.NUM_SPIKES;i++)
+			addSpike(input, 100 + 4*i, board.getWhitePieces(Board.NUM_SPIKES-1-i));
 		return input;
 	}
 
+	/*
+	 * The four units of one spike holding the given number of pieces
+	 */
+	private static void addSpike(SparseInput input, int counter, int pieces){
+		if (pieces >= 1) input.add(counter, 1);
+		if (pieces >= 2) input.add(counter+1, 1);
+		if (pieces >= 3) {
+			input.add(counter+2, 1);
+			input.add(counter+3, (pieces - 3.0)/2.0);
+		}
+	}
+
 }